@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class CodeCoverageCollector extends Collector {
@@ -76,12 +77,13 @@ public class CodeCoverageCollector extends Collector {
 
     private List<MetricFamilySamples> collectCoverageMetricForJob(List<MetricCollector<Run<?, ?>, ? extends Collector>> collectors) {
 
+        Predicate<String> jobEnabled = MetricStatusChecker.jobFilter();
         Jobs.forEachJob(job -> {
             Run<?,?> lastBuild = job.getLastBuild();
             if (lastBuild == null || lastBuild.isBuilding()) {
                 return;
             }
-            if (!MetricStatusChecker.isJobEnabled(job.getFullName())) {
+            if (!jobEnabled.test(job.getFullName())) {
                 LOGGER.debug("Job '{}' is excluded by configuration", job.getFullName());
                 return;
             }
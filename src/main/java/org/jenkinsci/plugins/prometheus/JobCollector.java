@@ -2,17 +2,26 @@ package org.jenkinsci.plugins.prometheus;
 
 import hudson.model.Job;
 import hudson.model.Run;
+import hudson.model.RunMap;
 import io.prometheus.client.Collector;
+import jenkins.model.lazy.LazyBuildMixIn;
+import jenkins.util.SystemProperties;
 import org.apache.commons.lang3.ArrayUtils;
+import org.jenkinsci.plugins.prometheus.collectors.BaseMetricCollector;
 import org.jenkinsci.plugins.prometheus.collectors.CollectorFactory;
 import org.jenkinsci.plugins.prometheus.collectors.CollectorType;
+import org.jenkinsci.plugins.prometheus.collectors.LabelInterner;
 import org.jenkinsci.plugins.prometheus.collectors.MetricCollector;
 import org.jenkinsci.plugins.prometheus.collectors.builds.BuildCompletionListener;
+import org.jenkinsci.plugins.prometheus.collectors.builds.BuildDurationSummary;
+import org.jenkinsci.plugins.prometheus.collectors.builds.BuildIndex;
 import org.jenkinsci.plugins.prometheus.collectors.builds.BuildCompletionListener.CloseableIterator;
 import org.jenkinsci.plugins.prometheus.collectors.builds.CounterManager;
 import org.jenkinsci.plugins.prometheus.collectors.builds.JobLabel;
+import org.jenkinsci.plugins.prometheus.collectors.jobs.JobChangeTracker;
 import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
 import org.jenkinsci.plugins.prometheus.config.disabledmetrics.MetricStatusChecker;
+import org.jenkinsci.plugins.prometheus.service.CollectionStatistics;
 import org.jenkinsci.plugins.prometheus.util.Jobs;
 import org.jenkinsci.plugins.prometheus.util.Runs;
 import org.slf4j.Logger;
@@ -20,21 +29,77 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class JobCollector extends Collector {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JobCollector.class);
 
-    private final BuildMetrics lastBuildMetrics = new BuildMetrics("last");
-    private final BuildMetrics perBuildMetrics = new BuildMetrics("");
+    // jobs whose metrics have not been calculated again for this long are calculated again even without any change
+    private static final long RECONCILIATION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(SystemProperties.getLong(
+            JobCollector.class.getName() + ".reconciliationIntervalMinutes", 60L));
+
+    // metrics of every job calculated in previous collections, by full name, only used for incremental collections
+    private final Map<String, CachedJobMetrics> cachedJobMetrics = new ConcurrentHashMap<>();
+
+    // build history of every job when only new builds are visited, by full name
+    private final Map<String, JobBuildHistory> buildHistories = new ConcurrentHashMap<>();
+    // the configuration the build histories have been accumulated with
+    private long buildHistoriesConfigurationStamp;
+    // label names of the build duration summaries of the current collection
+    private String[] summaryLabelNames;
+    private boolean accumulateBuildDurations;
+    // whether only builds already loaded into memory are used
+    private boolean loadedBuildsOnly;
+    // whether the build durations are read from the build index instead of the builds
+    private boolean readBuildIndex;
+    // the jobs excluded by the configuration, looked up once per collection
+    private Predicate<String> jobEnabled;
+    // the position of every family in the collected samples, by name
+    private Map<String, Integer> familyPositions;
+    // the configuration and the per build metrics option the family positions have been calculated with
+    private long familyPositionsConfigurationStamp;
+    private boolean familyPositionsPerBuildMetrics;
+
+    // number of runs visited by the current collection, exported by the collection statistics
+    private final LongAdder runsVisited = new LongAdder();
+    // number of runs the current collection did not take into account because they were not loaded
+    private final LongAdder runsSkipped = new LongAdder();
+
+    // the jobs are split into shardCount shards by the hash of their full name, only the jobs of this shard are collected
+    private final int shard;
+    private final int shardCount;
+    // shared by the collectors of all shards, null if the jobs are not sharded
+    private final Jobs.Partition partition;
+
+    public JobCollector() {
+        this.shard = 0;
+        this.shardCount = 1;
+        this.partition = null;
+    }
 
-    private MetricCollector<Run<?, ?>, ? extends Collector> summary;
-    private MetricCollector<Job<?, ?>, ? extends Collector> jobHealthScoreGauge;
-    private MetricCollector<Job<?, ?>, ? extends Collector> nbBuildsGauge;
-    private MetricCollector<Job<?, ?>, ? extends Collector> buildDiscardGauge;
-    private MetricCollector<Job<?, ?>, ? extends Collector> currentRunDurationGauge;
-    private MetricCollector<Job<?,?>, ? extends Collector> logUpdatedGauge;
+    public JobCollector(int shard, Jobs.Partition partition) {
+        this.shard = shard;
+        this.shardCount = partition.getShardCount();
+        this.partition = partition;
+    }
 
     private static class BuildMetrics {
 
@@ -72,19 +137,144 @@ public class JobCollector extends Collector {
             this.buildLogFileSizeGauge = factory.createRunCollector(CollectorType.BUILD_LOGFILE_SIZE_GAUGE, labelNameArray, buildPrefix);
             this.jobBuildWaitingDurationGauge = factory.createRunCollector(CollectorType.BUILD_WAITING_GAUGE, labelNameArray, buildPrefix);
         }
+
+        /**
+         * @return the collectors in the order their families are exposed
+         */
+        public List<MetricCollector<Run<?, ?>, ? extends Collector>> getCollectors() {
+            return Arrays.asList(jobBuildResultOrdinal, jobBuildResult, jobBuildDuration, jobBuildWaitingDurationGauge,
+                    jobBuildStartMillis, jobBuildTestsTotal, jobBuildTestsSkipped, jobBuildTestsFailing,
+                    jobBuildLikelyStuck, stageSummary, stageBuildResultOrdinal, buildLogFileSizeGauge);
+        }
+    }
+
+    /**
+     * The collectors of all metrics calculated per job. A single instance takes all jobs of a range. If the collection
+     * is incremental, the samples are split per job afterwards, so they can be kept, and the maximum number of series is
+     * applied once the samples of all jobs are merged instead of by the collectors.
+     */
+    private static class JobMetrics {
+
+        private final BuildMetrics lastBuildMetrics = new BuildMetrics("last");
+        private final BuildMetrics perBuildMetrics = new BuildMetrics("");
+        private final boolean isPerBuildMetrics;
+        // the label values passed to the collectors below, so equal label values share one array and strings
+        private final LabelInterner labels = new LabelInterner();
+
+        private final MetricCollector<Run<?, ?>, ? extends Collector> summary;
+        private final MetricCollector<Job<?, ?>, ? extends Collector> jobHealthScoreGauge;
+        private final MetricCollector<Job<?, ?>, ? extends Collector> nbBuildsGauge;
+        private final MetricCollector<Job<?, ?>, ? extends Collector> buildDiscardGauge;
+        private final MetricCollector<Job<?, ?>, ? extends Collector> currentRunDurationGauge;
+        private final MetricCollector<Job<?, ?>, ? extends Collector> currentStageDurationGauge;
+        private final MetricCollector<Job<?,?>, ? extends Collector> logUpdatedGauge;
+
+        public JobMetrics(String[] labelBaseNameArray, String[] labelNameArray, boolean isPerBuildMetrics, boolean limitSeries) {
+            CollectorFactory factory = new CollectorFactory();
+            this.isPerBuildMetrics = isPerBuildMetrics;
+
+            // Below metrics use labelNameArray which might include the optional labels
+            // of "parameters" or "status"
+            summary = factory.createRunCollector(CollectorType.BUILD_DURATION_SUMMARY, labelNameArray, null);
+
+            // This metric uses "base" labels as it is just the health score reported
+            // by the job object and the optional labels params and status don't make much
+            // sense in this context.
+            jobHealthScoreGauge = factory.createJobCollector(CollectorType.HEALTH_SCORE_GAUGE, labelBaseNameArray);
+
+            nbBuildsGauge = factory.createJobCollector(CollectorType.NB_BUILDS_GAUGE, labelBaseNameArray);
+
+            buildDiscardGauge = factory.createJobCollector(CollectorType.BUILD_DISCARD_GAUGE, labelBaseNameArray);
+
+            currentRunDurationGauge = factory.createJobCollector(CollectorType.CURRENT_RUN_DURATION_GAUGE, labelBaseNameArray);
+
+            currentStageDurationGauge = factory.createJobCollector(CollectorType.CURRENT_STAGE_DURATION_GAUGE, ArrayUtils.add(labelBaseNameArray, "stage"));
+
+            logUpdatedGauge = factory.createJobCollector(CollectorType.JOB_LOG_UPDATED_GAUGE, labelBaseNameArray);
+
+            if (isPerBuildMetrics) {
+                labelNameArray = Arrays.copyOf(labelNameArray, labelNameArray.length + 1);
+                labelNameArray[labelNameArray.length - 1] = "number";
+                perBuildMetrics.initCollectors(labelNameArray);
+            }
+
+            // The lastBuildMetrics are initialized with the "base" labels
+            lastBuildMetrics.initCollectors(labelBaseNameArray);
+
+            if (!limitSeries) {
+                for (MetricCollector<?, ? extends Collector> collector : getCollectors()) {
+                    disableSeriesLimit(collector);
+                }
+            }
+        }
+
+        /**
+         * @return the collectors in the order their families are exposed, the summary first
+         */
+        public List<MetricCollector<?, ? extends Collector>> getCollectors() {
+            List<MetricCollector<?, ? extends Collector>> collectors = new ArrayList<>(List.of(summary,
+                    jobHealthScoreGauge, nbBuildsGauge, buildDiscardGauge, currentRunDurationGauge,
+                    currentStageDurationGauge, logUpdatedGauge));
+            collectors.addAll(lastBuildMetrics.getCollectors());
+            if (isPerBuildMetrics) {
+                collectors.addAll(perBuildMetrics.getCollectors());
+            }
+            return collectors;
+        }
+
+        public void collect(List<MetricFamilySamples> samples) {
+            for (MetricCollector<?, ? extends Collector> collector : getCollectors()) {
+                addSamples(samples, collector.collect(), "Adding [{}] samples from collector ({})");
+            }
+        }
+    }
+
+    /**
+     * The samples of a single job together with the change stamp of the job they have been calculated at. The series
+     * are not limited yet.
+     */
+    private static class CachedJobMetrics {
+
+        private final long changeStamp;
+        private final long calculatedMillis;
+        private final List<MetricFamilySamples> samples;
+
+        private CachedJobMetrics(long changeStamp, long calculatedMillis, List<MetricFamilySamples> samples) {
+            this.changeStamp = changeStamp;
+            this.calculatedMillis = calculatedMillis;
+            this.samples = samples;
+        }
+    }
+
+    /**
+     * The builds of a job taken into account so far when only new builds are visited. All builds up to the watermark
+     * have been observed by the summary, except for those which were still building and are checked again.
+     */
+    private static class JobBuildHistory {
+
+        private final MetricCollector<Run<?, ?>, ? extends Collector> summary;
+        private int watermark;
+        private final Set<Integer> building = new HashSet<>();
+
+        private JobBuildHistory(String[] labelNames) {
+            summary = new CollectorFactory().createRunCollector(CollectorType.BUILD_DURATION_SUMMARY, labelNames, null);
+            // the summaries of all jobs are limited together once merged
+            disableSeriesLimit(summary);
+        }
     }
 
     @Override
     public List<MetricFamilySamples> collect() {
         LOGGER.debug("Collecting metrics for prometheus");
 
-        CollectorFactory factory = new CollectorFactory();
         List<MetricFamilySamples> samples = new ArrayList<>();
 
         String[] labelBaseNameArray = JobLabel.getBaseLabelNames();
         String[] labelNameArray = JobLabel.getJobLabelNames();
 
         boolean processDisabledJobs = PrometheusConfiguration.get().isProcessingDisabledBuilds();
+        boolean isPerBuildMetrics = PrometheusConfiguration.get().isPerBuildMetrics();
+        boolean incremental = PrometheusConfiguration.get().isIncrementalJobMetrics();
         boolean ignoreBuildMetrics =
                 !PrometheusConfiguration.get().isCountAbortedBuilds() &&
                         !PrometheusConfiguration.get().isCountFailedBuilds() &&
@@ -96,29 +286,28 @@ public class JobCollector extends Collector {
 
         if (ignoreBuildMetrics) {
             listener.unregister();
+            cachedJobMetrics.clear();
             return samples;
         }
 
-        // Below metrics use labelNameArray which might include the optional labels
-        // of "parameters" or "status"
-        summary = factory.createRunCollector(CollectorType.BUILD_DURATION_SUMMARY, labelNameArray, null);
-
-
         // Counter manager acts as a DB to retrieve any counters that are already in memory instead of reinitializing
         // them with each iteration of collect.
         var manager = CounterManager.getManager();
-        MetricCollector<Run<?, ?>, ? extends Collector> jobSuccessCount = manager.getCounter(CollectorType.BUILD_SUCCESSFUL_COUNTER, labelBaseNameArray, null);
-        MetricCollector<Run<?, ?>, ? extends Collector> jobFailedCount = manager.getCounter(CollectorType.BUILD_FAILED_COUNTER, labelBaseNameArray, null);
-        MetricCollector<Run<?, ?>, ? extends Collector> jobTotalCount = manager.getCounter(CollectorType.BUILD_TOTAL_COUNTER, labelBaseNameArray, null);
-        MetricCollector<Run<?, ?>, ? extends Collector> jobAbortedCount = manager.getCounter(CollectorType.BUILD_ABORTED_COUNTER, labelBaseNameArray, null);
-        MetricCollector<Run<?, ?>, ? extends Collector> jobUnstableCount = manager.getCounter(CollectorType.BUILD_UNSTABLE_COUNTER, labelBaseNameArray, null);
+        MetricCollector<Run<?, ?>, ? extends Collector> jobSuccessCount = manager.getCounter(CollectorType.BUILD_SUCCESSFUL_COUNTER, labelBaseNameArray, null, shard, shardCount);
+        MetricCollector<Run<?, ?>, ? extends Collector> jobFailedCount = manager.getCounter(CollectorType.BUILD_FAILED_COUNTER, labelBaseNameArray, null, shard, shardCount);
+        MetricCollector<Run<?, ?>, ? extends Collector> jobTotalCount = manager.getCounter(CollectorType.BUILD_TOTAL_COUNTER, labelBaseNameArray, null, shard, shardCount);
+        MetricCollector<Run<?, ?>, ? extends Collector> jobAbortedCount = manager.getCounter(CollectorType.BUILD_ABORTED_COUNTER, labelBaseNameArray, null, shard, shardCount);
+        MetricCollector<Run<?, ?>, ? extends Collector> jobUnstableCount = manager.getCounter(CollectorType.BUILD_UNSTABLE_COUNTER, labelBaseNameArray, null, shard, shardCount);
 
         // This is a try with resources block it ensures close is called
         // so if an exception occurs we don't reach deadlock. This is analogous to a using
         // block where dispose is called after we leave the block.
         // The closeable iterator synchronizes receiving jobs and reading the iterator,
         // so we don't modify the collection while iterating.
-        try (CloseableIterator<Run<?,?>> iterator = listener.iterator()) {
+        // A shard only takes the runs of its own jobs, the other runs are left for the other shards.
+        try (CloseableIterator<Run<?,?>> iterator = shardCount > 1
+                ? listener.iterator(run -> Jobs.isInShard(run.getParent().getFullName(), shard, shardCount))
+                : listener.iterator()) {
             // Go through each run received since the last scrape.
             while (iterator.hasNext()) {
                 Run<?,?> run = iterator.next();
@@ -134,75 +323,337 @@ public class JobCollector extends Collector {
             }
         }
 
-        // This metric uses "base" labels as it is just the health score reported
-        // by the job object and the optional labels params and status don't make much
-        // sense in this context.
-        jobHealthScoreGauge = factory.createJobCollector(CollectorType.HEALTH_SCORE_GAUGE, labelBaseNameArray);
+        addSamples(samples, jobSuccessCount.collect(), "Adding [{}] samples from counter ({})");
+        addSamples(samples, jobFailedCount.collect(), "Adding [{}] samples from counter ({})");
+        addSamples(samples, jobAbortedCount.collect(), "Adding [{}] samples from counter ({})");
+        addSamples(samples, jobUnstableCount.collect(), "Adding [{}] samples from counter ({})");
+        addSamples(samples, jobTotalCount.collect(), "Adding [{}] samples from counter ({})");
+
+        runsVisited.reset();
+        runsSkipped.reset();
+        summaryLabelNames = labelNameArray;
+        loadedBuildsOnly = PrometheusConfiguration.get().isLoadedBuildsOnly();
+        // the per build metrics need every build in every collection, unless only the loaded builds are used anyway
+        accumulateBuildDurations = loadedBuildsOnly
+                || PrometheusConfiguration.get().isAccumulateBuildDurations() && !isPerBuildMetrics;
+        long configurationStamp = JobChangeTracker.getConfigurationChangeStamp();
+        if (!accumulateBuildDurations || buildHistoriesConfigurationStamp != configurationStamp) {
+            // labels and counted results may have changed, so the builds are observed again from the start
+            buildHistories.clear();
+            buildHistoriesConfigurationStamp = configurationStamp;
+        }
+        jobEnabled = MetricStatusChecker.jobFilter();
+        // the per build metrics and the build parameter labels need the builds themselves
+        readBuildIndex = PrometheusConfiguration.get().isIndexBuilds() && !accumulateBuildDurations
+                && !isPerBuildMetrics && !JobLabel.hasBuildParameterLabels();
+
+        List<Job> jobs = partition == null ? Jobs.getJobs(shard, shardCount) : partition.getJobs(shard);
+        Set<String> visitedJobs = new HashSet<>();
+        for (Job job : jobs) {
+            visitedJobs.add(job.getFullName());
+        }
+        int parallelism = PrometheusConfiguration.get().getJobTraversalParallelism();
+        int maxSeries = PrometheusConfiguration.get().getMaxSeriesPerMetric();
+        if (incremental) {
+            long now = System.currentTimeMillis();
+            samples.addAll(merge(traverse(jobs, parallelism, range ->
+                    collectIncrementally(range, labelBaseNameArray, labelNameArray, isPerBuildMetrics, processDisabledJobs, now)),
+                    maxSeries));
+            // jobs which have been deleted, moved or left the shard
+            cachedJobMetrics.keySet().retainAll(visitedJobs);
+        } else {
+            cachedJobMetrics.clear();
+            // the maximum number of series applies to all jobs together, which the workers cannot share
+            if (maxSeries > 0) {
+                parallelism = 1;
+            }
+            List<List<MetricFamilySamples>> rangeSamples = traverse(jobs, parallelism, range -> {
+                JobMetrics metrics = new JobMetrics(labelBaseNameArray, labelNameArray, isPerBuildMetrics, true);
+                for (Job job : range) {
+                    processJob(job, metrics, processDisabledJobs);
+                }
+                List<MetricFamilySamples> jobSamples = new ArrayList<>();
+                metrics.collect(jobSamples);
+                return List.of(jobSamples);
+            });
+            samples.addAll(rangeSamples.size() == 1 ? rangeSamples.get(0) : merge(rangeSamples, 0));
+        }
+        if (accumulateBuildDurations) {
+            // jobs which have been deleted, moved or left the shard
+            buildHistories.keySet().retainAll(visitedJobs);
+            List<List<MetricFamilySamples>> summaries = new ArrayList<>(buildHistories.size());
+            // in the order of the jobs, so the same series are kept if there are too many
+            for (Job job : jobs) {
+                JobBuildHistory history = buildHistories.get(job.getFullName());
+                if (history != null) {
+                    summaries.add(history.summary.collect());
+                }
+            }
+            addSamples(samples, merge(summaries, maxSeries), "Adding [{}] samples from summary ({})");
+        }
+        CollectionStatistics.get().recordJobCollectorRunsVisited(shard, runsVisited.sum());
+        CollectionStatistics.get().recordJobCollectorRunsSkipped(shard, runsSkipped.sum());
+
+        // the summary, the counters and then all other families, however the jobs have been split
+        if (familyPositions == null || familyPositionsConfigurationStamp != configurationStamp
+                || familyPositionsPerBuildMetrics != isPerBuildMetrics) {
+            List<MetricCollector<?, ? extends Collector>> familyOrder =
+                    new JobMetrics(labelBaseNameArray, labelNameArray, isPerBuildMetrics, false).getCollectors();
+            familyOrder.addAll(1, List.of(jobSuccessCount, jobFailedCount, jobAbortedCount, jobUnstableCount, jobTotalCount));
+            familyPositions = positions(familyOrder);
+            familyPositionsConfigurationStamp = configurationStamp;
+            familyPositionsPerBuildMetrics = isPerBuildMetrics;
+        }
+        return sort(samples, familyPositions);
+    }
 
-        nbBuildsGauge = factory.createJobCollector(CollectorType.NB_BUILDS_GAUGE, labelBaseNameArray);
+    /**
+     * @return the position of the families of the given collectors, by name, in the order of the collectors
+     */
+    private static Map<String, Integer> positions(List<MetricCollector<?, ? extends Collector>> familyOrder) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (MetricCollector<?, ? extends Collector> collector : familyOrder) {
+            for (MetricFamilySamples family : collector.collect()) {
+                positions.putIfAbsent(family.name, positions.size());
+            }
+        }
+        return positions;
+    }
 
-        buildDiscardGauge = factory.createJobCollector(CollectorType.BUILD_DISCARD_GAUGE, labelBaseNameArray);
+    /**
+     * Puts the families into the order of their positions. Families without position follow in their current order.
+     */
+    private static List<MetricFamilySamples> sort(List<MetricFamilySamples> families, Map<String, Integer> positions) {
+        List<MetricFamilySamples> sorted = new ArrayList<>(families);
+        sorted.sort(Comparator.comparingInt(family -> positions.getOrDefault(family.name, positions.size())));
+        return sorted;
+    }
 
-        currentRunDurationGauge = factory.createJobCollector(CollectorType.CURRENT_RUN_DURATION_GAUGE, labelBaseNameArray);
+    /**
+     * Calculates only the jobs which changed since their metrics have been calculated, are building or have not been
+     * calculated for the reconciliation interval. The samples of all other jobs are taken from previous collections.
+     *
+     * @return the samples of each job
+     */
+    private List<List<MetricFamilySamples>> collectIncrementally(List<Job> jobs, String[] labelBaseNameArray,
+                                                                 String[] labelNameArray, boolean isPerBuildMetrics,
+                                                                 boolean processDisabledJobs, long now) {
+        // the change stamps of the jobs calculated again, by full name
+        Map<String, Long> changeStamps = new HashMap<>();
+        JobMetrics metrics = null;
+        for (Job<?, ?> job : jobs) {
+            String fullName = job.getFullName();
+            long changeStamp = JobChangeTracker.getChangeStamp(fullName);
+            CachedJobMetrics cached = cachedJobMetrics.get(fullName);
+            if (cached == null || cached.changeStamp != changeStamp || job.isBuilding()
+                    || now - cached.calculatedMillis > RECONCILIATION_INTERVAL_MILLIS) {
+                if (metrics == null) {
+                    metrics = new JobMetrics(labelBaseNameArray, labelNameArray, isPerBuildMetrics, false);
+                }
+                processJob(job, metrics, processDisabledJobs);
+                changeStamps.put(fullName, changeStamp);
+            }
+        }
+        if (metrics != null) {
+            List<MetricFamilySamples> samples = new ArrayList<>();
+            metrics.collect(samples);
+            Map<String, List<MetricFamilySamples>> samplesByJob = splitByJob(samples, changeStamps.keySet());
+            for (Map.Entry<String, Long> entry : changeStamps.entrySet()) {
+                cachedJobMetrics.put(entry.getKey(), new CachedJobMetrics(entry.getValue(), now, samplesByJob.get(entry.getKey())));
+            }
+        }
+        List<List<MetricFamilySamples>> jobSamples = new ArrayList<>(jobs.size());
+        for (Job<?, ?> job : jobs) {
+            jobSamples.add(cachedJobMetrics.get(job.getFullName()).samples);
+        }
+        return jobSamples;
+    }
 
-        logUpdatedGauge = factory.createJobCollector(CollectorType.JOB_LOG_UPDATED_GAUGE, labelBaseNameArray);
+    /**
+     * Splits the families calculated for several jobs into the families of each job, by the job label, which is the
+     * first label of every family calculated per job.
+     */
+    private static Map<String, List<MetricFamilySamples>> splitByJob(List<MetricFamilySamples> families, Set<String> fullNames) {
+        Map<String, List<MetricFamilySamples>> jobFamilies = new HashMap<>();
+        for (String fullName : fullNames) {
+            jobFamilies.put(fullName, new ArrayList<>());
+        }
+        for (MetricFamilySamples family : families) {
+            Map<String, List<MetricFamilySamples.Sample>> jobSamples = new HashMap<>();
+            for (MetricFamilySamples.Sample sample : family.samples) {
+                if (!sample.labelValues.isEmpty()) {
+                    jobSamples.computeIfAbsent(sample.labelValues.get(0), fullName -> new ArrayList<>()).add(sample);
+                }
+            }
+            for (Map.Entry<String, List<MetricFamilySamples.Sample>> entry : jobSamples.entrySet()) {
+                List<MetricFamilySamples> samples = jobFamilies.get(entry.getKey());
+                if (samples != null) {
+                    samples.add(new MetricFamilySamples(family.name, family.unit, family.type, family.help, entry.getValue()));
+                }
+            }
+        }
+        return jobFamilies;
+    }
 
-        if (PrometheusConfiguration.get().isPerBuildMetrics()) {
-            labelNameArray = Arrays.copyOf(labelNameArray, labelNameArray.length + 1);
-            labelNameArray[labelNameArray.length - 1] = "number";
-            perBuildMetrics.initCollectors(labelNameArray);
+    /**
+     * Applies the calculation to the jobs, either at once on the calling thread or split into ranges of consecutive
+     * jobs on a pool of the given number of threads. Each range is calculated into its own collectors by one thread,
+     * and the results are concatenated in the order of the jobs, so they do not depend on the scheduling.
+     */
+    private static List<List<MetricFamilySamples>> traverse(List<Job> jobs, int parallelism,
+                                                            Function<List<Job>, List<List<MetricFamilySamples>>> calculation) {
+        if (parallelism <= 1 || jobs.size() <= 1) {
+            return calculation.apply(jobs);
         }
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("Prometheus job collector worker " + thread.getPoolIndex());
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        }, null, false);
+        try {
+            // several ranges per thread, so threads which finish early take over ranges of jobs with long histories
+            int rangeSize = Math.max(1, jobs.size() / (parallelism * 4));
+            return pool.invoke(new JobRangeTask(jobs, rangeSize, calculation));
+        } finally {
+            pool.shutdown();
+        }
+    }
 
-        // The lastBuildMetrics are initialized with the "base" labels
-        lastBuildMetrics.initCollectors(labelBaseNameArray);
+    private static class JobRangeTask extends RecursiveTask<List<List<MetricFamilySamples>>> {
 
+        private final List<Job> jobs;
+        private final int rangeSize;
+        private final Function<List<Job>, List<List<MetricFamilySamples>>> calculation;
 
-        Jobs.forEachJob(job -> {
-            try {
-                if (job.isBuildable()) {
-                    if (!MetricStatusChecker.isJobEnabled(job.getFullName())) {
-                        LOGGER.debug("Job [{}] is excluded by configuration", job.getFullName());
-                        return;
-                    }
-                    LOGGER.debug("Collecting metrics for job [{}]", job.getFullName());
-                    appendJobMetrics(job);
-                } else {
-                    if (processDisabledJobs) {
-                        appendJobMetrics(job);
-                    } else {
-                        LOGGER.debug("job [{}] is disabled", job.getFullName());
-                    }
+        private JobRangeTask(List<Job> jobs, int rangeSize, Function<List<Job>, List<List<MetricFamilySamples>>> calculation) {
+            this.jobs = jobs;
+            this.rangeSize = rangeSize;
+            this.calculation = calculation;
+        }
+
+        @Override
+        protected List<List<MetricFamilySamples>> compute() {
+            if (jobs.size() <= rangeSize) {
+                return calculation.apply(jobs);
+            }
+            int middle = jobs.size() / 2;
+            JobRangeTask first = new JobRangeTask(jobs.subList(0, middle), rangeSize, calculation);
+            first.fork();
+            List<List<MetricFamilySamples>> second = new JobRangeTask(jobs.subList(middle, jobs.size()), rangeSize, calculation).compute();
+            List<List<MetricFamilySamples>> samples = new ArrayList<>(first.join());
+            samples.addAll(second);
+            return samples;
+        }
+    }
+
+    /**
+     * Merges the families of the same name, which contain the samples of different jobs, into one family each.
+     *
+     * @param maxSeries - the maximum number of series per family, 0 or less if the series have been limited already
+     */
+    private static List<MetricFamilySamples> merge(List<List<MetricFamilySamples>> jobSamples, int maxSeries) {
+        Map<String, MetricFamilySamples> families = new LinkedHashMap<>();
+        Map<String, List<MetricFamilySamples.Sample>> mergedSamples = new HashMap<>();
+        for (List<MetricFamilySamples> samples : jobSamples) {
+            for (MetricFamilySamples family : samples) {
+                families.putIfAbsent(family.name, family);
+                mergedSamples.computeIfAbsent(family.name, name -> new ArrayList<>()).addAll(family.samples);
+            }
+        }
+        List<MetricFamilySamples> samples = new ArrayList<>(families.size());
+        for (MetricFamilySamples family : families.values()) {
+            List<MetricFamilySamples.Sample> familySamples = mergedSamples.get(family.name);
+            if (maxSeries > 0) {
+                familySamples = limitSeries(family, familySamples, maxSeries);
+            }
+            samples.add(new MetricFamilySamples(family.name, family.unit, family.type, family.help, familySamples));
+        }
+        return samples;
+    }
+
+    /**
+     * Keeps the series of the first jobs, like the collectors do while calculating the jobs one after the other, and
+     * folds all further series into a single series with every label set to the overflow value. The quantile and bucket
+     * labels are kept, counts and sums are added up.
+     */
+    private static List<MetricFamilySamples.Sample> limitSeries(MetricFamilySamples family, List<MetricFamilySamples.Sample> samples, int maxSeries) {
+        Set<List<String>> admittedSeries = new HashSet<>();
+        Set<List<String>> rejectedSeries = new HashSet<>();
+        Map<List<String>, MetricFamilySamples.Sample> overflowSamples = new LinkedHashMap<>();
+        List<MetricFamilySamples.Sample> limited = new ArrayList<>(samples.size());
+        for (MetricFamilySamples.Sample sample : samples) {
+            List<String> series = new ArrayList<>(sample.labelValues.size());
+            List<String> overflowLabelValues = new ArrayList<>(sample.labelValues.size());
+            for (int i = 0; i < sample.labelNames.size(); i++) {
+                boolean seriesLabel = !"quantile".equals(sample.labelNames.get(i)) && !"le".equals(sample.labelNames.get(i));
+                if (seriesLabel) {
+                    series.add(sample.labelValues.get(i));
                 }
-            } catch (IllegalArgumentException e) {
-                if (!e.getMessage().contains("Incorrect number of labels")) {
-                    LOGGER.warn("Caught error when processing job [{}] error: ", job.getFullName(), e);
-                } // else - ignore exception
-            } catch (Exception e) {
-                LOGGER.warn("Caught error when processing job [{}] error: ", job.getFullName(), e);
+                overflowLabelValues.add(seriesLabel ? BaseMetricCollector.OVERFLOW_LABEL_VALUE : sample.labelValues.get(i));
             }
+            if (admittedSeries.contains(series) || admittedSeries.size() < maxSeries && admittedSeries.add(series)) {
+                limited.add(sample);
+                continue;
+            }
+            rejectedSeries.add(series);
+            List<String> key = new ArrayList<>(overflowLabelValues);
+            key.add(sample.name);
+            MetricFamilySamples.Sample overflow = overflowSamples.get(key);
+            double value = overflow != null && isAdditive(family, sample) ? overflow.value + sample.value : sample.value;
+            overflowSamples.put(key, new MetricFamilySamples.Sample(sample.name, sample.labelNames, overflowLabelValues, value));
+        }
+        limited.addAll(overflowSamples.values());
+        CollectionStatistics.get().recordSeriesRejected(family.name, rejectedSeries.size());
+        return limited;
+    }
 
-        });
+    private static boolean isAdditive(MetricFamilySamples family, MetricFamilySamples.Sample sample) {
+        if (!sample.name.startsWith(family.name)) {
+            return false;
+        }
+        String suffix = sample.name.substring(family.name.length());
+        return suffix.equals("_count") || suffix.equals("_sum") || suffix.equals("_bucket") || suffix.equals("_total");
+    }
 
-        addSamples(samples, summary.collect(), "Adding [{}] samples from summary ({})");
-        addSamples(samples, jobSuccessCount.collect(), "Adding [{}] samples from counter ({})");
-        addSamples(samples, jobFailedCount.collect(), "Adding [{}] samples from counter ({})");
-        addSamples(samples, jobAbortedCount.collect(), "Adding [{}] samples from counter ({})");
-        addSamples(samples, jobUnstableCount.collect(), "Adding [{}] samples from counter ({})");
-        addSamples(samples, jobTotalCount.collect(), "Adding [{}] samples from counter ({})");
-        addSamples(samples, jobHealthScoreGauge.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(samples, nbBuildsGauge.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(samples, buildDiscardGauge.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(samples, currentRunDurationGauge.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(samples, logUpdatedGauge.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(samples, lastBuildMetrics);
-        if (PrometheusConfiguration.get().isPerBuildMetrics()) {
-            addSamples(samples, perBuildMetrics);
+    /**
+     * Lifts the maximum number of series of the collectors, as it is applied once the samples of all jobs are merged.
+     */
+    private static void disableSeriesLimit(MetricCollector<?, ?> collector) {
+        if (collector instanceof BaseMetricCollector) {
+            ((BaseMetricCollector<?, ?>) collector).setMaxSeries(0);
         }
+    }
 
-        return samples;
+    private void processJob(Job<?, ?> job, JobMetrics metrics, boolean processDisabledJobs) {
+        try {
+            if (job.isBuildable()) {
+                if (!jobEnabled.test(job.getFullName())) {
+                    LOGGER.debug("Job [{}] is excluded by configuration", job.getFullName());
+                    buildHistories.remove(job.getFullName());
+                    return;
+                }
+                LOGGER.debug("Collecting metrics for job [{}]", job.getFullName());
+                appendJobMetrics(job, metrics);
+            } else {
+                if (processDisabledJobs) {
+                    appendJobMetrics(job, metrics);
+                } else {
+                    LOGGER.debug("job [{}] is disabled", job.getFullName());
+                    buildHistories.remove(job.getFullName());
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            if (!e.getMessage().contains("Incorrect number of labels")) {
+                LOGGER.warn("Caught error when processing job [{}] error: ", job.getFullName(), e);
+            } // else - ignore exception
+        } catch (Exception e) {
+            LOGGER.warn("Caught error when processing job [{}] error: ", job.getFullName(), e);
+        }
     }
 
-    private void addSamples(List<MetricFamilySamples> allSamples, List<MetricFamilySamples> newSamples, String logMessage) {
+    private static void addSamples(List<MetricFamilySamples> allSamples, List<MetricFamilySamples> newSamples, String logMessage) {
         for (MetricFamilySamples metricFamilySample : newSamples) {
             int sampleCount = metricFamilySample.samples.size();
             if (sampleCount > 0) {
@@ -212,24 +663,13 @@ public class JobCollector extends Collector {
         }
     }
 
-    private void addSamples(List<MetricFamilySamples> allSamples, BuildMetrics buildMetrics) {
-        addSamples(allSamples, buildMetrics.jobBuildResultOrdinal.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.jobBuildResult.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.jobBuildDuration.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.jobBuildWaitingDurationGauge.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.jobBuildStartMillis.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.jobBuildTestsTotal.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.jobBuildTestsSkipped.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.jobBuildTestsFailing.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.jobBuildLikelyStuck.collect(), "Adding [{}] samples from gauge ({})");
-        addSamples(allSamples, buildMetrics.stageSummary.collect(), "Adding [{}] samples from summary ({})");
-        addSamples(allSamples, buildMetrics.stageBuildResultOrdinal.collect(), "Adding [{}] samples from summary ({})");
-        addSamples(allSamples, buildMetrics.buildLogFileSizeGauge.collect(), "Adding [{}] samples from summary ({})");
-    }
-
-    protected void appendJobMetrics(Job<?, ?> job) {
-        boolean isPerBuildMetrics = PrometheusConfiguration.get().isPerBuildMetrics();
-        String[] baseLabelValueArray = JobLabel.getBaseLabelValues(job);
+    private void appendJobMetrics(Job<?, ?> job, JobMetrics metrics) {
+        if (loadedBuildsOnly && job instanceof LazyBuildMixIn.LazyLoadingJob) {
+            appendLoadedJobMetrics(job, metrics, ((LazyBuildMixIn.LazyLoadingJob<?, ?>) job).getLazyBuildMixIn()._getRuns());
+            return;
+        }
+        boolean isPerBuildMetrics = metrics.isPerBuildMetrics;
+        String[] baseLabelValueArray = metrics.labels.intern(JobLabel.getBaseLabelValues(job));
 
         Run<?, ?> buildToCheck = job.getLastBuild();
 
@@ -250,49 +690,243 @@ public class JobCollector extends Collector {
 
         LOGGER.debug("Calculating job metrics for [{}]", buildToCheck.number);
 
-        nbBuildsGauge.calculateMetric(job, baseLabelValueArray);
-        jobHealthScoreGauge.calculateMetric(job, baseLabelValueArray);
-        buildDiscardGauge.calculateMetric(job, baseLabelValueArray);
-        currentRunDurationGauge.calculateMetric(job, baseLabelValueArray);
-        logUpdatedGauge.calculateMetric(job, baseLabelValueArray);
+        metrics.nbBuildsGauge.calculateMetric(job, baseLabelValueArray);
+        metrics.jobHealthScoreGauge.calculateMetric(job, baseLabelValueArray);
+        metrics.buildDiscardGauge.calculateMetric(job, baseLabelValueArray);
+        metrics.currentRunDurationGauge.calculateMetric(job, baseLabelValueArray);
+        metrics.currentStageDurationGauge.calculateMetric(job, baseLabelValueArray);
+        metrics.logUpdatedGauge.calculateMetric(job, baseLabelValueArray);
 
-        processRun(job, buildToCheck, baseLabelValueArray, lastBuildMetrics);
+        processRun(job, buildToCheck, baseLabelValueArray, metrics.lastBuildMetrics, true);
+
+        if (accumulateBuildDurations) {
+            appendNewBuilds(job, buildToCheck, metrics.labels);
+            return;
+        }
+        if (readBuildIndex) {
+            appendIndexedBuilds(job, buildToCheck, metrics);
+            return;
+        }
 
         Run<?, ?> run = buildToCheck;
         while (run != null) {
+            runsVisited.increment();
             LOGGER.debug("getting metrics for run [{}] from job [{}], include per run metrics [{}]", run.getNumber(), job.getName(), isPerBuildMetrics);
             if (Runs.includeBuildInMetrics(run)) {
                 LOGGER.debug("getting build info for run [{}] from job [{}]", run.getNumber(), job.getName());
                 String[] labelValueArray = JobLabel.getJobLabelValues(job, run);
 
-                summary.calculateMetric(run, labelValueArray);
+                metrics.summary.calculateMetric(run, metrics.labels.intern(labelValueArray));
 
                 if (isPerBuildMetrics) {
                     labelValueArray = Arrays.copyOf(labelValueArray, labelValueArray.length + 1);
                     labelValueArray[labelValueArray.length - 1] = String.valueOf(run.getNumber());
 
-                    processRun(job, run, labelValueArray, perBuildMetrics);
+                    processRun(job, run, metrics.labels.intern(labelValueArray), metrics.perBuildMetrics, true);
+                }
+            }
+            run = run.getPreviousBuild();
+        }
+    }
+
+    /**
+     * Calculates the metrics of a job only from the builds which are already loaded, no build record is read from disk.
+     * The job metrics and the last build metrics are only calculated if the last build is loaded, the number of builds
+     * and the health score are not calculated at all. The durations of new builds which are not loaded anymore are
+     * skipped.
+     */
+    private void appendLoadedJobMetrics(Job<?, ?> job, JobMetrics metrics, RunMap<?> runs) {
+        String[] baseLabelValueArray = metrics.labels.intern(JobLabel.getBaseLabelValues(job));
+        SortedMap<Integer, ? extends Run<?, ?>> loadedBuilds = runs.getLoadedBuilds();
+
+        int lastNumber = runs.maxNumberOnDisk();
+        // Never built
+        if (lastNumber <= 0) {
+            LOGGER.debug("job [{}] never built", job.getFullName());
+            return;
+        }
+        metrics.buildDiscardGauge.calculateMetric(job, baseLabelValueArray);
+
+        Run<?, ?> buildToCheck = loadedBuilds.get(lastNumber);
+        if (buildToCheck == null) {
+            LOGGER.debug("Last build of job [{}] is not loaded. Skipping job metrics.", job.getFullName());
+        } else {
+            // the job metrics read the last build, which is loaded
+            metrics.currentRunDurationGauge.calculateMetric(job, baseLabelValueArray);
+            metrics.currentStageDurationGauge.calculateMetric(job, baseLabelValueArray);
+            metrics.logUpdatedGauge.calculateMetric(job, baseLabelValueArray);
+            if (buildToCheck.isBuilding()) {
+                int previousNumber = lastNumber - 1;
+                while (previousNumber > 0 && !runs.runExists(previousNumber)) {
+                    previousNumber--;
+                }
+                buildToCheck = loadedBuilds.get(previousNumber);
+            }
+        }
+        if (buildToCheck != null) {
+            processRun(job, buildToCheck, baseLabelValueArray, metrics.lastBuildMetrics, false);
+        }
+
+        JobBuildHistory history = buildHistories.get(job.getFullName());
+        if (history == null || lastNumber < history.watermark) {
+            history = new JobBuildHistory(summaryLabelNames);
+            // builds older than the oldest loaded one completed before the history started
+            history.watermark = loadedBuilds.isEmpty() ? lastNumber : Math.min(lastNumber, Collections.min(loadedBuilds.keySet()) - 1);
+            buildHistories.put(job.getFullName(), history);
+        }
+        for (Iterator<Integer> iterator = history.building.iterator(); iterator.hasNext(); ) {
+            int number = iterator.next();
+            Run<?, ?> run = loadedBuilds.get(number);
+            if (run == null) {
+                iterator.remove();
+                if (runs.runExists(number)) {
+                    runsSkipped.increment();
+                }
+            } else if (!run.isBuilding()) {
+                iterator.remove();
+                runsVisited.increment();
+                observeDuration(job, run, history, metrics.labels);
+            }
+        }
+        for (int number = history.watermark + 1; number <= lastNumber; number++) {
+            Run<?, ?> run = loadedBuilds.get(number);
+            if (run == null) {
+                if (runs.runExists(number)) {
+                    runsSkipped.increment();
+                }
+            } else if (run.isBuilding()) {
+                history.building.add(number);
+            } else {
+                runsVisited.increment();
+                observeDuration(job, run, history, metrics.labels);
+            }
+        }
+        history.watermark = lastNumber;
+
+        if (metrics.isPerBuildMetrics) {
+            for (Run<?, ?> run : loadedBuilds.values()) {
+                if (Runs.includeBuildInMetrics(run)) {
+                    String[] labelValueArray = JobLabel.getJobLabelValues(job, run);
+                    labelValueArray = Arrays.copyOf(labelValueArray, labelValueArray.length + 1);
+                    labelValueArray[labelValueArray.length - 1] = String.valueOf(run.getNumber());
+                    processRun(job, run, metrics.labels.intern(labelValueArray), metrics.perBuildMetrics, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Observes the durations of the builds completed since the previous collection. The walk through the build history
+     * stops at the watermark, so older builds are not loaded again.
+     */
+    private void appendNewBuilds(Job<?, ?> job, Run<?, ?> buildToCheck, LabelInterner labels) {
+        JobBuildHistory history = buildHistories.computeIfAbsent(job.getFullName(), name -> new JobBuildHistory(summaryLabelNames));
+        if (buildToCheck.getNumber() < history.watermark) {
+            // the next build number has been reset, the builds are observed again from the start
+            history = new JobBuildHistory(summaryLabelNames);
+            buildHistories.put(job.getFullName(), history);
+        }
+
+        // builds below the watermark which were still building when the watermark passed them
+        for (Iterator<Integer> iterator = history.building.iterator(); iterator.hasNext(); ) {
+            Run<?, ?> run = job.getBuildByNumber(iterator.next());
+            if (run == null || !run.isBuilding()) {
+                iterator.remove();
+                if (run != null) {
+                    runsVisited.increment();
+                    observeDuration(job, run, history, labels);
                 }
             }
+        }
+
+        Run<?, ?> run = buildToCheck;
+        while (run != null && run.getNumber() > history.watermark) {
+            runsVisited.increment();
+            if (run.isBuilding()) {
+                history.building.add(run.getNumber());
+            } else {
+                observeDuration(job, run, history, labels);
+            }
             run = run.getPreviousBuild();
         }
+        history.watermark = Math.max(history.watermark, buildToCheck.getNumber());
     }
 
-    private void processRun(Job<?, ?> job, Run<?, ?> run, String[] buildLabelValueArray, BuildMetrics buildMetrics) {
+    /**
+     * Observes the durations of all builds from the build index of the job. Builds above the watermark of the index may
+     * have completed while they were not indexed, so they are walked and the missing ones appended first. Afterwards the
+     * watermark is moved up to the oldest build still building, so the build history is walked only once per job.
+     */
+    private void appendIndexedBuilds(Job<?, ?> job, Run<?, ?> buildToCheck, JobMetrics metrics) {
+        BuildIndex.Contents index = BuildIndex.read(job);
+        SortedMap<Integer, BuildIndex.Record> records = index.getRecords();
+        // the next build number has been reset, the builds are walked again from the start
+        int watermark = buildToCheck.getNumber() < index.getWatermark() ? 0 : index.getWatermark();
+        int newWatermark = buildToCheck.getNumber();
+        List<BuildIndex.Record> missing = new ArrayList<>();
+        Run<?, ?> run = buildToCheck;
+        while (run != null && run.getNumber() > watermark) {
+            runsVisited.increment();
+            if (run.isBuilding()) {
+                // indexed once it completes, or by a later collection
+                newWatermark = run.getNumber() - 1;
+            } else if (!records.containsKey(run.getNumber())) {
+                BuildIndex.Record record = BuildIndex.Record.of(run);
+                missing.add(record);
+                records.put(record.getNumber(), record);
+            }
+            run = run.getPreviousBuild();
+        }
+        if (!missing.isEmpty() || newWatermark != index.getWatermark()) {
+            Collections.reverse(missing);
+            BuildIndex.backfill(job, missing, newWatermark);
+        }
+
+        if (!(metrics.summary instanceof BuildDurationSummary)) {
+            // the summary is disabled
+            return;
+        }
+        RunMap<?> runs = job instanceof LazyBuildMixIn.LazyLoadingJob
+                ? ((LazyBuildMixIn.LazyLoadingJob<?, ?>) job).getLazyBuildMixIn()._getRuns()
+                : null;
+        for (BuildIndex.Record record : records.values()) {
+            // builds deleted since they have been indexed
+            boolean exists = runs == null ? job.getBuildByNumber(record.getNumber()) != null : runs.runExists(record.getNumber());
+            if (exists && Runs.includeResultInMetrics(record.getResult())) {
+                ((BuildDurationSummary) metrics.summary).observe(record.getDurationMillis(),
+                        metrics.labels.intern(JobLabel.getJobLabelValues(job, record.getResult())));
+            }
+        }
+    }
+
+    private void observeDuration(Job<?, ?> job, Run<?, ?> run, JobBuildHistory history, LabelInterner labels) {
+        if (Runs.includeBuildInMetrics(run)) {
+            LOGGER.debug("getting build info for run [{}] from job [{}]", run.getNumber(), job.getName());
+            history.summary.calculateMetric(run, labels.intern(JobLabel.getJobLabelValues(job, run)));
+        }
+    }
+
+    /**
+     * @param readsDisk - whether the metrics read from the disk may be calculated, which are the stages read from the
+     *                  flow graph storage, the test results read from the test reports and the size of the log file
+     */
+    private void processRun(Job<?, ?> job, Run<?, ?> run, String[] buildLabelValueArray, BuildMetrics buildMetrics, boolean readsDisk) {
         LOGGER.debug("Processing run [{}] from job [{}]", run.getNumber(), job.getName());
         buildMetrics.jobBuildResultOrdinal.calculateMetric(run, buildLabelValueArray);
         buildMetrics.jobBuildResult.calculateMetric(run, buildLabelValueArray);
         buildMetrics.jobBuildStartMillis.calculateMetric(run, buildLabelValueArray);
         buildMetrics.jobBuildDuration.calculateMetric(run, buildLabelValueArray);
-        // Label values are calculated within stageSummary, so we pass null here.
-        buildMetrics.stageSummary.calculateMetric(run, buildLabelValueArray);
-        buildMetrics.stageBuildResultOrdinal.calculateMetric(run, buildLabelValueArray);
-        buildMetrics.jobBuildTestsTotal.calculateMetric(run, buildLabelValueArray);
-        buildMetrics.jobBuildTestsSkipped.calculateMetric(run, buildLabelValueArray);
-        buildMetrics.jobBuildTestsFailing.calculateMetric(run, buildLabelValueArray);
         buildMetrics.jobBuildLikelyStuck.calculateMetric(run,buildLabelValueArray);
-        buildMetrics.buildLogFileSizeGauge.calculateMetric(run, buildLabelValueArray);
         buildMetrics.jobBuildWaitingDurationGauge.calculateMetric(run, buildLabelValueArray);
+        if (readsDisk) {
+            // Label values are calculated within stageSummary, so we pass null here.
+            buildMetrics.stageSummary.calculateMetric(run, buildLabelValueArray);
+            buildMetrics.stageBuildResultOrdinal.calculateMetric(run, buildLabelValueArray);
+            buildMetrics.jobBuildTestsTotal.calculateMetric(run, buildLabelValueArray);
+            buildMetrics.jobBuildTestsSkipped.calculateMetric(run, buildLabelValueArray);
+            buildMetrics.jobBuildTestsFailing.calculateMetric(run, buildLabelValueArray);
+            buildMetrics.buildLogFileSizeGauge.calculateMetric(run, buildLabelValueArray);
+        }
     }
 
 }
@@ -1,5 +1,6 @@
 package org.jenkinsci.plugins.prometheus.collectors;
 
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
 import org.jenkinsci.plugins.prometheus.config.disabledmetrics.MetricStatusChecker;
 import org.jenkinsci.plugins.prometheus.util.ConfigurationUtils;
 
@@ -17,6 +18,10 @@ public abstract class BaseCollectorFactory {
     protected MetricCollector saveBuildCollector(MetricCollector collector) {
         String fullName = namespace + "_" + subsystem + "_" + collector.calculateName();
         if (MetricStatusChecker.isEnabled(fullName)) {
+            if (collector instanceof BaseMetricCollector) {
+                PrometheusConfiguration configuration = PrometheusConfiguration.get();
+                ((BaseMetricCollector<?, ?>) collector).setMaxSeries(configuration == null ? 0 : configuration.getMaxSeriesPerMetric());
+            }
             return collector;
         }
         return new NoOpMetricCollector<>();
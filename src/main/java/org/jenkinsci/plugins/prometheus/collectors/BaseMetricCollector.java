@@ -2,12 +2,17 @@ package org.jenkinsci.plugins.prometheus.collectors;
 
 import io.prometheus.client.Collector;
 import io.prometheus.client.SimpleCollector;
+import org.jenkinsci.plugins.prometheus.service.CollectionStatistics;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class BaseMetricCollector<T, I extends SimpleCollector<?>> implements MetricCollector<T, I> {
 
     protected final static String SEPARATOR = "_";
+    public final static String OVERFLOW_LABEL_VALUE = "__overflow__";
 
     protected final String[] labelNames;
     protected final String namespace;
@@ -15,6 +20,11 @@ public abstract class BaseMetricCollector<T, I extends SimpleCollector<?>> imple
     protected final String namePrefix;
     protected final I collector;
 
+    private final Set<List<String>> knownSeries = ConcurrentHashMap.newKeySet();
+    // label value combinations folded into the overflow series, each counted once
+    private final Set<List<String>> rejectedSeries = ConcurrentHashMap.newKeySet();
+    private volatile int maxSeries;
+
     protected BaseMetricCollector(String[] labelNames, String namespace, String subsystem, String namePrefix) {
         this.labelNames = labelNames;
         this.namespace = namespace;
@@ -56,8 +66,55 @@ public abstract class BaseMetricCollector<T, I extends SimpleCollector<?>> imple
                 .create();
     }
 
+    /**
+     * Limits the number of series of this metric family, see {@link #limitCardinality(String...)}.
+     *
+     * @param maxSeries - the maximum number of series, 0 or less for no limit
+     */
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    /**
+     * Has to be applied to the label values before a child of the collector is created. As soon as the maximum number
+     * of series is reached, all further label value combinations are folded into a single series with every label set to
+     * {@value #OVERFLOW_LABEL_VALUE}.
+     *
+     * @return the label values to use
+     */
+    protected String[] limitCardinality(String... labelValues) {
+        int maxSeries = this.maxSeries;
+        if (maxSeries <= 0 || labelValues.length == 0 || labelValues.length != labelNames.length) {
+            return labelValues;
+        }
+        List<String> series = Arrays.asList(labelValues.clone());
+        if (knownSeries.contains(series) || admit(series, maxSeries)) {
+            return labelValues;
+        }
+        rejectedSeries.add(series);
+        String[] overflow = new String[labelValues.length];
+        Arrays.fill(overflow, OVERFLOW_LABEL_VALUE);
+        return overflow;
+    }
+
+    /**
+     * Checking the number of series and adding a new one has to be atomic, as the jobs may be calculated by several
+     * threads at once.
+     */
+    private synchronized boolean admit(List<String> series, int maxSeries) {
+        if (knownSeries.size() < maxSeries) {
+            knownSeries.add(series);
+            return true;
+        }
+        return knownSeries.contains(series);
+    }
+
     @Override
     public List<Collector.MetricFamilySamples> collect() {
+        if (maxSeries > 0) {
+            CollectionStatistics.get().recordSeriesRejected(namespace + SEPARATOR + subsystem + SEPARATOR + calculateName(),
+                    rejectedSeries.size());
+        }
         return collector.collect();
     }
 
@@ -30,6 +30,7 @@ public enum CollectorType {
     NB_BUILDS_GAUGE("available_builds_count"),
     BUILD_DISCARD_GAUGE("discard_active"),
     CURRENT_RUN_DURATION_GAUGE("running_build_duration_milliseconds"),
+    CURRENT_STAGE_DURATION_GAUGE("running_stage_duration_milliseconds"),
     EXECUTORS_AVAILABLE_GAUGE("available"),
     EXECUTORS_BUSY_GAUGE("busy"),
     EXECUTORS_CONNECTING_GAUGE("connecting"),
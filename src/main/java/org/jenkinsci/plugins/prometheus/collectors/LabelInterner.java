@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.prometheus.collectors;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns label values and tuples of label values. Collectors which are passed the interned tuples share one array per
+ * tuple as the key of their children and one string per label value, instead of a copy per collector and calculation.
+ * Tuples of interned values are compared by the identity of their values.
+ * <p>
+ * An interner is not thread-safe, it is meant to be used by the collectors of a single thread and to be dropped
+ * together with them.
+ */
+public final class LabelInterner {
+
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<Tuple, String[]> tuples = new HashMap<>();
+
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String interned = values.putIfAbsent(value, value);
+        return interned == null ? value : interned;
+    }
+
+    /**
+     * Replaces the values of the given array by their interned instances.
+     *
+     * @return the array all tuples equal to the given one are interned as, it must not be modified
+     */
+    public String[] intern(String[] labelValues) {
+        for (int i = 0; i < labelValues.length; i++) {
+            labelValues[i] = intern(labelValues[i]);
+        }
+        String[] interned = tuples.putIfAbsent(new Tuple(labelValues), labelValues);
+        return interned == null ? labelValues : interned;
+    }
+
+    private static final class Tuple {
+
+        private final String[] values;
+        private final int hash;
+
+        private Tuple(String[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Tuple)) {
+                return false;
+            }
+            Tuple other = (Tuple) o;
+            if (hash != other.hash || values.length != other.values.length) {
+                return false;
+            }
+            // both tuples consist of interned values
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != other.values[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package org.jenkinsci.plugins.prometheus.collectors;
 
 import hudson.model.Run;
-import hudson.tasks.test.AbstractTestResultAction;
 import io.prometheus.client.SimpleCollector;
 import org.jenkinsci.plugins.prometheus.collectors.builds.BuildsMetricCollector;
+import org.jenkinsci.plugins.prometheus.collectors.builds.TestResultCounts;
 import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
 
 public abstract class TestBasedMetricCollector<T, I extends SimpleCollector<?>> extends BuildsMetricCollector<T, I> {
@@ -26,6 +26,13 @@ public abstract class TestBasedMetricCollector<T, I extends SimpleCollector<?>>
 
 
     private boolean hasTestResults(Run<?, ?> job) {
-        return job.getAction(AbstractTestResultAction.class) != null;
+        return TestResultCounts.of(job) != null;
+    }
+
+    /**
+     * @return the test result counts of a run for which {@link #canBeCalculated(Run)} is true
+     */
+    protected TestResultCounts getTestResultCounts(Run<?, ?> run) {
+        return TestResultCounts.of(run);
     }
 }
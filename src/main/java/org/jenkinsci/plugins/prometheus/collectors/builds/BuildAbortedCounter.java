@@ -34,7 +34,7 @@ public class BuildAbortedCounter extends BuildsMetricCollector<Run<?, ?>, Counte
     public void calculateMetric(Run<?, ?> jenkinsObject, String[] labelValues) {
         // Increment counter if result was unstable.
         if(jenkinsObject.getResult() == Result.ABORTED){
-            this.collector.labels(labelValues).inc();
+            this.collector.labels(limitCardinality(labelValues)).inc();
         }
     }
 }
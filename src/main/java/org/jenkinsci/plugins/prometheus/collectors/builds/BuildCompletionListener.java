@@ -12,6 +12,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 /*
  * Listens to builds that have been completed and stores them in a list.
@@ -123,6 +124,39 @@ public class BuildCompletionListener extends RunListener<Run<?,?>> {
         };
     }
 
+    /*
+     * Returns a closeable iterator over the runs matching the filter, e.g. the runs of the jobs of one shard.
+     * Only the matching runs are removed from the list, the remaining ones are left for the other readers.
+     */
+    public synchronized CloseableIterator<Run<?,?>> iterator(Predicate<Run<?,?>> filter){
+        // acquire lock before iterating
+        lock.lock();
+        List<Run<?,?>> matching = new ArrayList<>();
+        try {
+            runStack.removeIf(run -> filter.test(run) && matching.add(run));
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+        return new CloseableIterator<>() {
+            private final Iterator<Run<?, ?>> iterator = matching.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Run<?, ?> next() {
+                return iterator.next();
+            }
+
+            public void close() {
+                lock.unlock();
+            }
+        };
+    }
+
     List<Run<?, ?>> getRunStack() {
         return runStack;
     }
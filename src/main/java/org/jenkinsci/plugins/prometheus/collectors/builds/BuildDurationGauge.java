@@ -29,7 +29,7 @@ public class BuildDurationGauge extends BuildsMetricCollector<Run<?, ?>, Gauge>
     @Override
     public void calculateMetric(Run<?, ?> jenkinsObject, String[] labelValues) {
         if (!jenkinsObject.isBuilding()) {
-            collector.labels(labelValues).set(jenkinsObject.getDuration());
+            collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getDuration());
         }
     }
 }
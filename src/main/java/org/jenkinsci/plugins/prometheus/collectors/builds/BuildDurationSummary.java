@@ -30,7 +30,14 @@ public class BuildDurationSummary extends BuildsMetricCollector<Run<?, ?>, Summa
     public void calculateMetric(Run<?, ?> jenkinsObject, String[] labelValues) {
         if (!jenkinsObject.isBuilding()) {
             long duration = jenkinsObject.getDuration();
-            this.collector.labels(labelValues).observe(duration);
+            this.collector.labels(limitCardinality(labelValues)).observe(duration);
         }
     }
+
+    /**
+     * Observes the duration of a completed build which has not been loaded, like one read from the {@link BuildIndex}.
+     */
+    public void observe(long durationMillis, String[] labelValues) {
+        this.collector.labels(limitCardinality(labelValues)).observe(durationMillis);
+    }
 }
@@ -0,0 +1,326 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import jenkins.metrics.impl.TimeInQueueAction;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only index of the completed builds of a job, kept in the job directory. It holds everything the build history
+ * metrics need in fixed-width records, so they can be read from a single file instead of loading every build.
+ * Builds are appended by {@link IndexingListener} when they complete. Builds which completed while nothing was indexed,
+ * before the option was enabled or while it was disabled, are appended by the collection, which walks the builds above
+ * the watermark kept in the header: up to the watermark, every completed build is indexed.
+ */
+public final class BuildIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildIndex.class);
+
+    static final String FILE_NAME = "prometheus-build-index";
+
+    private static final int MAGIC = 0x50424958;
+    private static final int FILE_VERSION = 2;
+    // magic, version and watermark
+    static final int HEADER_SIZE = 12;
+    private static final int WATERMARK_POSITION = 8;
+    // passed instead of a watermark by appends which keep it
+    static final int KEEP_WATERMARK = -1;
+    // number, result, start, duration, queuing duration, tests total, failed and skipped, padded to 48 bytes
+    static final int RECORD_SIZE = 48;
+
+    private static final Result[] RESULTS = {Result.SUCCESS, Result.UNSTABLE, Result.FAILURE, Result.NOT_BUILT, Result.ABORTED};
+
+    // serializes the appends to each index file, reading does not need it
+    private static final Map<Path, Object> fileLocks = new ConcurrentHashMap<>();
+
+    private BuildIndex() {
+        // prevents creating new instances
+    }
+
+    public static Path getIndexFile(Job<?, ?> job) {
+        return job.getRootDir().toPath().resolve(FILE_NAME);
+    }
+
+    /**
+     * Appends the given completed builds to the index of their job.
+     */
+    public static void append(Job<?, ?> job, Collection<Record> records) {
+        try {
+            append(getIndexFile(job), records, KEEP_WATERMARK);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to update the build index of job [{}]", job.getFullName(), e);
+        }
+    }
+
+    /**
+     * Appends the given completed builds, which have been missing from the index, and moves the watermark.
+     *
+     * @param watermark - the number up to which every completed build of the job is indexed afterwards
+     */
+    public static void backfill(Job<?, ?> job, Collection<Record> records, int watermark) {
+        try {
+            append(getIndexFile(job), records, watermark);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to update the build index of job [{}]", job.getFullName(), e);
+        }
+    }
+
+    static void append(Path file, Collection<Record> records, int watermark) throws IOException {
+        if (records.isEmpty() && watermark == KEEP_WATERMARK) {
+            return;
+        }
+        synchronized (fileLocks.computeIfAbsent(file, path -> new Object())) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + records.size() * RECORD_SIZE);
+                if (size < HEADER_SIZE || !hasKnownFormat(channel)) {
+                    // nothing indexed yet or an unknown format, which is started over
+                    size = 0;
+                    buffer.putInt(MAGIC).putInt(FILE_VERSION).putInt(watermark == KEEP_WATERMARK ? 0 : watermark);
+                } else {
+                    // a record cut off by a crash is overwritten
+                    size -= (size - HEADER_SIZE) % RECORD_SIZE;
+                }
+                for (Record record : records) {
+                    record.writeTo(buffer);
+                }
+                buffer.flip();
+                channel.truncate(size);
+                channel.position(size);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (size > 0 && watermark != KEEP_WATERMARK) {
+                    // only after the records, so the watermark never covers builds which are not indexed
+                    ByteBuffer watermarkBuffer = ByteBuffer.allocate(Integer.BYTES).putInt(watermark);
+                    watermarkBuffer.flip();
+                    while (watermarkBuffer.hasRemaining()) {
+                        channel.write(watermarkBuffer, WATERMARK_POSITION + watermarkBuffer.position());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the indexed builds of the job
+     */
+    public static Contents read(Job<?, ?> job) {
+        try {
+            return read(getIndexFile(job));
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read the build index of job [{}]", job.getFullName(), e);
+            return new Contents(new TreeMap<>(), 0);
+        }
+    }
+
+    static Contents read(Path file) throws IOException {
+        SortedMap<Integer, Record> records = new TreeMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return new Contents(records, 0);
+            }
+            // read into the heap, a mapped file could not be truncated, deleted or renamed on Windows until it is unmapped
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            readFully(channel, buffer);
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FILE_VERSION) {
+                LOGGER.info("Ignoring build index {} written in an unknown format", file);
+                return new Contents(records, 0);
+            }
+            int watermark = buffer.getInt();
+            // a record which is being appended is not complete yet
+            while (buffer.remaining() >= RECORD_SIZE) {
+                Record record = Record.readFrom(buffer);
+                records.put(record.getNumber(), record);
+            }
+            return new Contents(records, watermark);
+        } catch (NoSuchFileException e) {
+            // nothing indexed yet
+            return new Contents(records, 0);
+        }
+    }
+
+    private static boolean hasKnownFormat(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        return header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == FILE_VERSION;
+    }
+
+    /**
+     * Reads the start of the file into the buffer, up to its capacity or the end of the file, and flips it.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * The builds read from an index.
+     */
+    public static final class Contents {
+
+        private final SortedMap<Integer, Record> records;
+        private final int watermark;
+
+        Contents(SortedMap<Integer, Record> records, int watermark) {
+            this.records = records;
+            this.watermark = watermark;
+        }
+
+        /**
+         * @return the indexed builds by number, a build indexed more than once is taken from its last record
+         */
+        public SortedMap<Integer, Record> getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the number up to which every completed build is indexed, builds above it may be missing
+         */
+        public int getWatermark() {
+            return watermark;
+        }
+    }
+
+    /**
+     * The values of a completed build the build history metrics are calculated from.
+     */
+    public static final class Record {
+
+        private final int number;
+        @CheckForNull
+        private final Result result;
+        private final long startMillis;
+        private final long durationMillis;
+        // -1 if unknown
+        private final long queuingDurationMillis;
+        // -1 if the build has no test results
+        private final int testsTotal;
+        private final int testsFailed;
+        private final int testsSkipped;
+
+        Record(int number, @CheckForNull Result result, long startMillis, long durationMillis, long queuingDurationMillis,
+               int testsTotal, int testsFailed, int testsSkipped) {
+            this.number = number;
+            this.result = result;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+            this.queuingDurationMillis = queuingDurationMillis;
+            this.testsTotal = testsTotal;
+            this.testsFailed = testsFailed;
+            this.testsSkipped = testsSkipped;
+        }
+
+        public static Record of(Run<?, ?> run) {
+            TimeInQueueAction timeInQueue = run.getAction(TimeInQueueAction.class);
+            TestResultCounts testResults = TestResultCounts.of(run);
+            return new Record(run.getNumber(), run.getResult(), run.getStartTimeInMillis(), run.getDuration(),
+                    timeInQueue == null ? -1 : timeInQueue.getQueuingDurationMillis(),
+                    testResults == null ? -1 : testResults.getTotal(),
+                    testResults == null ? -1 : testResults.getFailed(),
+                    testResults == null ? -1 : testResults.getSkipped());
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        @CheckForNull
+        public Result getResult() {
+            return result;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public long getQueuingDurationMillis() {
+            return queuingDurationMillis;
+        }
+
+        public int getTestsTotal() {
+            return testsTotal;
+        }
+
+        public int getTestsFailed() {
+            return testsFailed;
+        }
+
+        public int getTestsSkipped() {
+            return testsSkipped;
+        }
+
+        private void writeTo(ByteBuffer buffer) {
+            int start = buffer.position();
+            buffer.putInt(number)
+                    .putInt(result == null ? -1 : result.ordinal)
+                    .putLong(startMillis)
+                    .putLong(durationMillis)
+                    .putLong(queuingDurationMillis)
+                    .putInt(testsTotal)
+                    .putInt(testsFailed)
+                    .putInt(testsSkipped);
+            buffer.position(start + RECORD_SIZE);
+        }
+
+        private static Record readFrom(ByteBuffer buffer) {
+            int start = buffer.position();
+            Record record = new Record(buffer.getInt(), result(buffer.getInt()), buffer.getLong(), buffer.getLong(),
+                    buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+            buffer.position(start + RECORD_SIZE);
+            return record;
+        }
+
+        @CheckForNull
+        private static Result result(int ordinal) {
+            for (Result result : RESULTS) {
+                if (result.ordinal == ordinal) {
+                    return result;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Extension
+    public static class IndexingListener extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+            PrometheusConfiguration configuration = PrometheusConfiguration.get();
+            if (configuration != null && configuration.isIndexBuilds()) {
+                append(run.getParent(), List.of(Record.of(run)));
+            }
+        }
+    }
+}
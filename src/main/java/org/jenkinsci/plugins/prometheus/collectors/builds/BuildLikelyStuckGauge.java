@@ -39,6 +39,6 @@ public class BuildLikelyStuckGauge extends BuildsMetricCollector<Run<?, ?>, Gaug
         }
 
         double likelyStuckDoubleValue = executor.isLikelyStuck() ? 1.0 : 0.0;
-        this.collector.labels(labelValues).set(likelyStuckDoubleValue);
+        this.collector.labels(limitCardinality(labelValues)).set(likelyStuckDoubleValue);
     }
 }
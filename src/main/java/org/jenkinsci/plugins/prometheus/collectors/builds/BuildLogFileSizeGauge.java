@@ -33,7 +33,7 @@ public class BuildLogFileSizeGauge extends BuildsMetricCollector<Run<?, ?>, Gaug
             AnnotatedLargeText logText = jenkinsObject.getLogText();
             long logFileSize = logText.length();
 
-            collector.labels(labelValues).set(logFileSize);
+            collector.labels(limitCardinality(labelValues)).set(logFileSize);
         }
     }
 }
@@ -41,6 +41,6 @@ public class BuildResultGauge extends BuildsMetricCollector<Run<?, ?>, Gauge> {
         if (null != runResult) {
             ordinal = runResult.ordinal;
         }
-        collector.labels(labelValues).set(ordinal < 2 ? 1 : 0);
+        collector.labels(limitCardinality(labelValues)).set(ordinal < 2 ? 1 : 0);
     }
 }
@@ -46,7 +46,7 @@ public class BuildResultOrdinalGauge extends BuildsMetricCollector<Run<?, ?>, Ga
         if (labelValues == null) {
             this.collector.labels().set(ordinal);
         } else {
-            this.collector.labels(labelValues).set(ordinal);
+            this.collector.labels(limitCardinality(labelValues)).set(ordinal);
         }
     }
 }
@@ -29,6 +29,6 @@ public class BuildStartGauge extends BuildsMetricCollector<Run<?, ?>, Gauge> {
     @Override
     public void calculateMetric(Run<?, ?> jenkinsObject, String[] labelValues) {
         long millis = jenkinsObject.getStartTimeInMillis();
-        collector.labels(labelValues).set(millis);
+        collector.labels(limitCardinality(labelValues)).set(millis);
     }
 }
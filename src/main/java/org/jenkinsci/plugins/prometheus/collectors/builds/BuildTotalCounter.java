@@ -34,7 +34,7 @@ public class BuildTotalCounter extends BuildsMetricCollector<Run<?, ?>, Counter>
     public void calculateMetric(Run<?, ?> jenkinsObject, String[] labelValues) {
         // Increment counter every run that is completed.
         if(jenkinsObject.getResult() != Result.NOT_BUILT){
-             this.collector.labels(labelValues).inc();
+             this.collector.labels(limitCardinality(labelValues)).inc();
         }
     }
 }
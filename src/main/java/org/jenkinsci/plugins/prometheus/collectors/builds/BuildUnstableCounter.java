@@ -34,7 +34,7 @@ public class BuildUnstableCounter extends BuildsMetricCollector<Run<?, ?>, Count
     public void calculateMetric(Run<?, ?> jenkinsObject, String[] labelValues) {
         // increment counter if the result was unstable.
         if(jenkinsObject.getResult() == Result.UNSTABLE){
-            this.collector.labels(labelValues).inc();
+            this.collector.labels(limitCardinality(labelValues)).inc();
         }
     }
 }
@@ -33,7 +33,7 @@ public class BuildWaitingDurationGauge extends BuildsMetricCollector<Run<?, ?>,
             TimeInQueueAction action = jenkinsObject.getAction(TimeInQueueAction.class);
             if (action != null) {
                 long queuingDurationMillis = action.getQueuingDurationMillis();
-                collector.labels(labelValues).set(queuingDurationMillis);
+                collector.labels(limitCardinality(labelValues)).set(queuingDurationMillis);
             }
         }
     }
@@ -31,7 +31,7 @@ public class CounterManager {
     /*
      * Singleton instance method to get the manager.
      */
-    public static CounterManager getManager() {
+    public static synchronized CounterManager getManager() {
         if (manager == null) {
             manager = new CounterManager();
         }
@@ -51,7 +51,15 @@ public class CounterManager {
      * @return Metric collector counter.
      */
     public MetricCollector<Run<?, ?>, ? extends Collector> getCounter(CollectorType type, String[]labels, String prefix){
-        CounterEntry entry = new CounterEntry(type, labels, prefix);
+        return getCounter(type, labels, prefix, 0, 1);
+    }
+
+    /*
+     * Retrieves the counter of one job shard, every shard only counts the builds of its own jobs.
+     * @return Metric collector counter.
+     */
+    public synchronized MetricCollector<Run<?, ?>, ? extends Collector> getCounter(CollectorType type, String[]labels, String prefix, int shard, int shardCount){
+        CounterEntry entry = new CounterEntry(type, labels, prefix, shard, shardCount);
 
         // If we have the counter return it.
         if(hasCounter(entry)){
@@ -83,14 +91,20 @@ public class CounterManager {
         // namespace of the counter
         private final String namespace;
 
+        // job shard the counter belongs to
+        private final int shard;
+        private final int shardCount;
+
         /*
          * Creates new counter entry
          */
-        public CounterEntry(CollectorType type, String[] labels, String prefix) {
+        public CounterEntry(CollectorType type, String[] labels, String prefix, int shard, int shardCount) {
             this.labels = labels;
             this.type = type;
             this.prefix = prefix;
             this.namespace = ConfigurationUtils.getNamespace();
+            this.shard = shard;
+            this.shardCount = shardCount;
         }
 
         @Override
@@ -112,6 +126,11 @@ public class CounterManager {
                 return false;
             }
 
+            // Compare the shard
+            if(this.shard != entry.shard || this.shardCount != entry.shardCount){
+                return false;
+            }
+
             // Compare namespace values.
             if(this.namespace != null && !this.namespace.equals(entry.namespace)){
                 return false;
@@ -126,7 +145,7 @@ public class CounterManager {
             int typeHash = type != null ? type.hashCode() : 0;
             int prefixHash = prefix != null ? prefix.hashCode() : 0;
             int namespaceHash = namespace != null ? namespace.hashCode() : 0;
-            return 31 * (typeHash + Arrays.hashCode(labels) + prefixHash + namespaceHash);
+            return 31 * (typeHash + Arrays.hashCode(labels) + prefixHash + namespaceHash + 31 * shard + shardCount);
         }
     }
 }
@@ -1,7 +1,6 @@
 package org.jenkinsci.plugins.prometheus.collectors.builds;
 
 import hudson.model.Run;
-import hudson.tasks.test.AbstractTestResultAction;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.SimpleCollector;
 import org.jenkinsci.plugins.prometheus.collectors.CollectorType;
@@ -34,7 +33,7 @@ public class FailedTestsGauge extends TestBasedMetricCollector<Run<?, ?>, Gauge>
             return;
         }
 
-        int testsFailed = jenkinsObject.getAction(AbstractTestResultAction.class).getFailCount();
-        collector.labels(labelValues).set(testsFailed);
+        int testsFailed = getTestResultCounts(jenkinsObject).getFailed();
+        collector.labels(limitCardinality(labelValues)).set(testsFailed);
     }
 }
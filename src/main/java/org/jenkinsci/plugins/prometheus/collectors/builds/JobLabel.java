@@ -4,10 +4,16 @@ import hudson.model.Job;
 import hudson.model.Result;
 import hudson.model.Run;
 import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.prometheus.collectors.jobs.JobChangeTracker;
 import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.jenkinsci.plugins.prometheus.util.BuildCache;
 import org.jenkinsci.plugins.prometheus.util.Runs;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /*
@@ -17,6 +23,11 @@ public class JobLabel {
     private static final String NOT_AVAILABLE = "NA";
     private static final String UNDEFINED = "UNDEFINED";
 
+    // label values following the base label values of completed builds
+    private static final BuildCache<String[]> cachedBuildLabelValues = new BuildCache<>(JobLabel.class);
+    // the configuration the cached label values have been calculated with
+    private static long cachedConfigurationStamp;
+
     /*
      * Returns the base label names based of the Prometheus configuration
      * @return an array of label names
@@ -65,40 +76,94 @@ public class JobLabel {
     }
 
     /*
-     * Gets label values specific to job centric metrics.
+     * Returns whether the job specific labels contain build parameters, which are only known to the build itself.
+     */
+    public static boolean hasBuildParameterLabels() {
+        return PrometheusConfiguration.get().isAppendParamLabel()
+                || PrometheusConfiguration.get().getLabeledBuildParameterNamesAsArray().length > 0;
+    }
+
+    /*
+     * Gets label values specific to job centric metrics of a completed build of which only the result is known.
+     * Must not be used if the labels contain build parameters, see hasBuildParameterLabels.
+     * @return array of label values for a job.
+     */
+    public static String[] getJobLabelValues(Job<?, ?> job, Result result) {
+        String[] labelValueArray = getBaseLabelValues(job);
+        if (PrometheusConfiguration.get().isAppendStatusLabel()) {
+            labelValueArray = Arrays.copyOf(labelValueArray, labelValueArray.length + 1);
+            labelValueArray[labelValueArray.length - 1] = result == null ? UNDEFINED : result.toString();
+        }
+        return labelValueArray;
+    }
+
+    /*
+     * Gets label values specific to job centric metrics. The values following the base label values are cached for
+     * completed builds until the plugin configuration changes.
      * @return array of label values for a job.
      */
     public static String[] getJobLabelValues(Job<?, ?> job, Run<?, ?> run) {
+        String[] baseLabelValues = getBaseLabelValues(job);
+        String[] buildLabelValues = run.isBuilding() ? getBuildLabelValues(run) : getCachedBuildLabelValues(run);
+        String[] labelValueArray = Arrays.copyOf(baseLabelValues, baseLabelValues.length + buildLabelValues.length);
+        System.arraycopy(buildLabelValues, 0, labelValueArray, baseLabelValues.length, buildLabelValues.length);
+        return labelValueArray;
+    }
+
+    private static String[] getCachedBuildLabelValues(Run<?, ?> run) {
+        long configurationStamp = JobChangeTracker.getConfigurationChangeStamp();
+        synchronized (cachedBuildLabelValues) {
+            if (cachedConfigurationStamp != configurationStamp) {
+                cachedBuildLabelValues.clear();
+                cachedConfigurationStamp = configurationStamp;
+            }
+            String[] labelValues = cachedBuildLabelValues.get(run);
+            if (labelValues != null) {
+                return labelValues;
+            }
+        }
+        String[] labelValues = getBuildLabelValues(run);
+        synchronized (cachedBuildLabelValues) {
+            if (cachedConfigurationStamp == configurationStamp) {
+                cachedBuildLabelValues.put(run, labelValues);
+            }
+        }
+        return labelValues;
+    }
+
+    /*
+     * Gets the label values of the build parameters and the status, without the base label values.
+     */
+    private static String[] getBuildLabelValues(Run<?, ?> run) {
         boolean isAppendParamLabel = PrometheusConfiguration.get().isAppendParamLabel();
         boolean isAppendStatusLabel = PrometheusConfiguration.get().isAppendStatusLabel();
         String[] buildParameterNamesAsArray = PrometheusConfiguration.get().getLabeledBuildParameterNamesAsArray();
 
-        Result runResult = run.getResult();
-        String[] labelValueArray = getBaseLabelValues(job);
+        Map<String, Object> buildParameters = isAppendParamLabel || buildParameterNamesAsArray.length > 0
+                ? Runs.getBuildParameters(run)
+                : Collections.emptyMap();
+        List<String> labelValues = new ArrayList<>(2 + buildParameterNamesAsArray.length);
         if (isAppendParamLabel) {
-            String params = Runs.getBuildParameters(run).entrySet().stream().map(e -> e.getKey() + "=" + e.getValue())
-                    .collect(Collectors.joining(";"));
-            labelValueArray = Arrays.copyOf(labelValueArray, labelValueArray.length + 1);
-            labelValueArray[labelValueArray.length - 1] = params;
+            labelValues.add(buildParameters.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining(";")));
         }
         if (isAppendStatusLabel) {
+            Result runResult = run.getResult();
             String resultString = UNDEFINED;
             if (runResult != null) {
                 resultString = runResult.toString();
             }
-            labelValueArray = Arrays.copyOf(labelValueArray, labelValueArray.length + 1);
-            labelValueArray[labelValueArray.length - 1] = run.isBuilding() ? "RUNNING" : resultString;
+            labelValues.add(run.isBuilding() ? "RUNNING" : resultString);
         }
 
         for (String configBuildParam : buildParameterNamesAsArray) {
-            labelValueArray = Arrays.copyOf(labelValueArray, labelValueArray.length + 1);
             String paramValue = UNDEFINED;
-            Object paramInBuild = Runs.getBuildParameters(run).get(configBuildParam);
+            Object paramInBuild = buildParameters.get(configBuildParam);
             if (paramInBuild != null) {
                 paramValue = String.valueOf(paramInBuild);
             }
-            labelValueArray[labelValueArray.length - 1] = paramValue;
+            labelValues.add(paramValue);
         }
-        return labelValueArray;
+        return labelValues.toArray(new String[0]);
     }
 }
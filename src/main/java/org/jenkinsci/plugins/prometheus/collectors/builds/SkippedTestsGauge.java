@@ -1,7 +1,6 @@
 package org.jenkinsci.plugins.prometheus.collectors.builds;
 
 import hudson.model.Run;
-import hudson.tasks.test.AbstractTestResultAction;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.SimpleCollector;
 import org.jenkinsci.plugins.prometheus.collectors.CollectorType;
@@ -34,7 +33,7 @@ public class SkippedTestsGauge extends TestBasedMetricCollector<Run<?, ?>, Gauge
             return;
         }
 
-        int testsSkipped = jenkinsObject.getAction(AbstractTestResultAction.class).getSkipCount();
-        collector.labels(labelValues).set(testsSkipped);
+        int testsSkipped = getTestResultCounts(jenkinsObject).getSkipped();
+        collector.labels(limitCardinality(labelValues)).set(testsSkipped);
     }
 }
@@ -1,6 +1,5 @@
 package org.jenkinsci.plugins.prometheus.collectors.builds;
 
-import com.cloudbees.workflow.rest.external.StageNodeExt;
 import hudson.model.Job;
 import hudson.model.Run;
 import io.prometheus.client.Gauge;
@@ -14,8 +13,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
-import static org.jenkinsci.plugins.prometheus.util.FlowNodes.getSortedStageNodes;
-
 public class StageBuildResultOrdinalGauge extends BuildsMetricCollector<Run<?, ?>, Gauge> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StageBuildResultOrdinalGauge.class);
@@ -57,21 +54,21 @@ public class StageBuildResultOrdinalGauge extends BuildsMetricCollector<Run<?, ?
     }
 
     private void processPipelineRunStages(Job job, WorkflowRun workflowRun, String[] labelValues) {
-        List<StageNodeExt> stages = getSortedStageNodes(workflowRun);
-        for (StageNodeExt stage : stages) {
-            if (stage != null) {
-                observeStage(job, workflowRun, stage, labelValues);
-            }
+        List<StageRecords.Stage> stages = StageRecords.getStages(workflowRun);
+        for (StageRecords.Stage stage : stages) {
+            observeStage(job, workflowRun, stage, labelValues);
         }
     }
 
-    private void observeStage(Job job, Run run, StageNodeExt stage, String[] labelValues) {
+    private void observeStage(Job job, Run run, StageRecords.Stage stage, String[] labelValues) {
 
         LOGGER.debug("Observing stage[{}] in run [{}] from job [{}]", stage.getName(), run.getNumber(), job.getName());
         String stageName = stage.getName();
 
         String[] values = ArrayUtils.add(labelValues, stageName);
 
-        collector.labels(values).set(stage.getStatus().ordinal());
+        if (stage.getStatus() != null) {
+            collector.labels(limitCardinality(values)).set(stage.getStatus().ordinal());
+        }
     }
 }
@@ -0,0 +1,284 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import com.cloudbees.workflow.rest.external.StatusExt;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Queue;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionListener;
+import org.jenkinsci.plugins.workflow.flow.GraphListener;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.GenericStatus;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.StageChunkFinder;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.StatusAndTiming;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.TimingInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Records the stages of pipeline builds while they run, from the flow nodes added to their execution. The running
+ * stages of a build are available without scanning its flow graph, and the stages of a build recorded from its start
+ * are handed to {@link StageRecords} when it completes, so its flow graph is never scanned for the stage metrics.
+ */
+public final class StageRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StageRecorder.class);
+
+    private static final Map<WorkflowRun, Recording> recordings = new WeakHashMap<>();
+
+    private StageRecorder() {
+        // prevents creating new instances
+    }
+
+    /**
+     * @return the stages of the build which have started but not ended yet, by the id of the node starting them
+     */
+    public static Map<String, RunningStage> getRunningStages(WorkflowRun run) {
+        Recording recording;
+        synchronized (recordings) {
+            recording = recordings.get(run);
+        }
+        return recording == null ? Map.of() : recording.getRunningStages();
+    }
+
+    /**
+     * A stage which has started but not ended yet. Stages of parallel branches may share their name.
+     */
+    public static final class RunningStage {
+
+        private final String name;
+        private final long startMillis;
+
+        public RunningStage(String name, long startMillis) {
+            this.name = name;
+            this.startMillis = startMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+    }
+
+    /**
+     * The stages of a single build, by the id of the node starting them. It is notified synchronously, so all nodes
+     * have been recorded when the execution completes.
+     * <p>
+     * A new node is announced before its step started, and the stage step only labels its node when it starts, so
+     * whether a node starts a stage is only known once later nodes arrive: a stage is running from its first body node
+     * on, and it ends with the node ending its block. Its status and duration are calculated like the scan does once
+     * the node following the stage arrives, which the scan measures the stage up to.
+     */
+    static final class Recording implements GraphListener.Synchronous {
+
+        private final StageChunkFinder finder = new StageChunkFinder();
+        // a recording attached after the build resumed has missed the stages before
+        private final boolean complete;
+        private final Map<String, RecordedStage> stages = new LinkedHashMap<>();
+        // the stages which ended but whose following node has not arrived yet, by the id of the node ending them
+        private final Map<String, RecordedStage> ending = new HashMap<>();
+        // whether a stage could not be recorded the way the scan finds it, like a stage without a block, which only
+        // ends with the next stage
+        private boolean missed;
+
+        Recording(boolean complete) {
+            this.complete = complete;
+        }
+
+        @Override
+        public void onNewHead(FlowNode node) {
+            for (FlowNode parent : node.getParents()) {
+                RecordedStage ended;
+                synchronized (this) {
+                    ended = ending.remove(parent.getId());
+                }
+                if (ended != null) {
+                    complete(ended, node);
+                } else if (finder.isChunkStart(parent, null)) {
+                    synchronized (this) {
+                        if (!(parent instanceof BlockStartNode)) {
+                            missed = true;
+                        } else if (!stages.containsKey(parent.getId())) {
+                            stages.put(parent.getId(), new RecordedStage(parent.getDisplayName(), parent));
+                        }
+                    }
+                }
+            }
+            if (node instanceof BlockEndNode) {
+                FlowNode start = ((BlockEndNode<?>) node).getStartNode();
+                if (finder.isChunkStart(start, null)) {
+                    synchronized (this) {
+                        RecordedStage stage = stages.computeIfAbsent(start.getId(),
+                                id -> new RecordedStage(start.getDisplayName(), start));
+                        stage.end = node;
+                        ending.put(node.getId(), stage);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Calculates the status and the duration of an ended stage the same way the scan does.
+         */
+        private void complete(RecordedStage stage, FlowNode after) {
+            FlowNode start = stage.start;
+            FlowNode end = stage.end;
+            FlowNode before = start.getParents().isEmpty() ? null : start.getParents().get(0);
+            WorkflowRun run = getRun(after.getExecution());
+            if (run == null) {
+                synchronized (this) {
+                    missed = true;
+                }
+                return;
+            }
+            TimingInfo timing = StatusAndTiming.computeChunkTiming(run, 0, start, end, after);
+            GenericStatus status = StatusAndTiming.computeChunkStatus2(run, before, start, end, after);
+            synchronized (this) {
+                stage.durationMillis = timing == null ? 0 : timing.getTotalDurationMillis();
+                stage.status = StatusExt.fromGenericStatus(status);
+                stage.start = null;
+                stage.end = null;
+            }
+        }
+
+        /**
+         * @return whether the recorded stages are all stages of the build, which can be used instead of a scan
+         */
+        synchronized boolean isComplete() {
+            if (!complete || missed || stages.isEmpty()) {
+                return false;
+            }
+            for (RecordedStage stage : stages.values()) {
+                // a stage which never ended has been missed
+                if (stage.status == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized Map<String, RunningStage> getRunningStages() {
+            Map<String, RunningStage> running = new LinkedHashMap<>();
+            for (Map.Entry<String, RecordedStage> entry : stages.entrySet()) {
+                RecordedStage stage = entry.getValue();
+                if (stage.status == null && stage.end == null) {
+                    running.put(entry.getKey(), new RunningStage(stage.name, stage.startMillis));
+                }
+            }
+            return running;
+        }
+
+        /**
+         * @return the ended stages sorted by the id of the node starting them, like the stages found by a scan
+         */
+        synchronized List<StageRecords.Stage> getStages() {
+            Map<String, RecordedStage> sorted = new TreeMap<>(stages);
+            List<StageRecords.Stage> ended = new ArrayList<>(sorted.size());
+            for (RecordedStage stage : sorted.values()) {
+                if (stage.status != null) {
+                    ended.add(new StageRecords.Stage(stage.name, stage.status, stage.durationMillis));
+                }
+            }
+            return ended;
+        }
+
+        private static long startTime(FlowNode node) {
+            long startTime = TimingAction.getStartTime(node);
+            return startTime > 0 ? startTime : System.currentTimeMillis();
+        }
+    }
+
+    private static final class RecordedStage {
+
+        private final String name;
+        private final long startMillis;
+        // the nodes starting and ending the stage, only kept until its status has been calculated
+        private FlowNode start;
+        @CheckForNull
+        private FlowNode end;
+        private long durationMillis;
+        // null until the node following the stage arrived
+        private StatusExt status;
+
+        private RecordedStage(String name, FlowNode start) {
+            this.name = name;
+            this.startMillis = Recording.startTime(start);
+            this.start = start;
+        }
+    }
+
+    @Extension
+    public static class RecordingListener extends FlowExecutionListener {
+
+        @Override
+        public void onRunning(@NonNull FlowExecution execution) {
+            attach(execution, true);
+        }
+
+        @Override
+        public void onResumed(@NonNull FlowExecution execution) {
+            attach(execution, false);
+        }
+
+        @Override
+        public void onCompleted(@NonNull FlowExecution execution) {
+            WorkflowRun run = getRun(execution);
+            if (run == null) {
+                return;
+            }
+            Recording recording;
+            synchronized (recordings) {
+                recording = recordings.remove(run);
+            }
+            // otherwise the stages are scanned once they are needed
+            if (recording != null && recording.isComplete()) {
+                StageRecords.putStages(run, recording.getStages());
+            }
+        }
+
+        private static void attach(FlowExecution execution, boolean complete) {
+            PrometheusConfiguration configuration = PrometheusConfiguration.get();
+            if (configuration == null || !configuration.isRecordStages()) {
+                return;
+            }
+            WorkflowRun run = getRun(execution);
+            if (run == null) {
+                return;
+            }
+            Recording recording = new Recording(complete);
+            synchronized (recordings) {
+                recordings.put(run, recording);
+            }
+            execution.addListener(recording);
+        }
+    }
+
+    @CheckForNull
+    private static WorkflowRun getRun(FlowExecution execution) {
+        try {
+            Queue.Executable executable = execution.getOwner().getExecutable();
+            return executable instanceof WorkflowRun ? (WorkflowRun) executable : null;
+        } catch (IOException e) {
+            LOGGER.debug("Unable to get the build of execution {}", execution, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import com.cloudbees.workflow.rest.external.StageNodeExt;
+import com.cloudbees.workflow.rest.external.StatusExt;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.jenkinsci.plugins.prometheus.util.BuildCache;
+import org.jenkinsci.plugins.prometheus.util.FlowNodes;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The stages of pipeline builds, shared by the stage metrics. Scanning the flow graph of a build is expensive, so the
+ * stages of a completed build are only scanned once, or taken from the {@link StageRecorder}, and kept in memory, and
+ * optionally in a file in the build directory, as they never change anymore.
+ */
+public final class StageRecords {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StageRecords.class);
+
+    static final String FILE_NAME = "prometheus-stages";
+
+    private static final int MAGIC = 0x50535447;
+    private static final int FILE_VERSION = 1;
+
+    // stages of completed builds
+    private static final BuildCache<List<Stage>> cachedStages = new BuildCache<>(StageRecords.class);
+
+    private StageRecords() {
+        // prevents creating new instances
+    }
+
+    /**
+     * @return the stages of the build sorted by their node id
+     */
+    public static List<Stage> getStages(WorkflowRun run) {
+        if (run.isBuilding()) {
+            return scan(run);
+        }
+        List<Stage> cached = cachedStages.get(run);
+        if (cached != null) {
+            return cached;
+        }
+        boolean store = PrometheusConfiguration.get().isStoreStages();
+        Path file = run.getRootDir().toPath().resolve(FILE_NAME);
+        List<Stage> stages = store ? read(file) : null;
+        if (stages == null) {
+            stages = scan(run);
+            if (store) {
+                write(file, stages);
+            }
+        }
+        cachedStages.put(run, stages);
+        return stages;
+    }
+
+    /**
+     * Takes the stages of a completed build recorded while it was running, see {@link StageRecorder}.
+     */
+    static void putStages(WorkflowRun run, List<Stage> stages) {
+        stages = Collections.unmodifiableList(stages);
+        if (PrometheusConfiguration.get().isStoreStages()) {
+            write(run.getRootDir().toPath().resolve(FILE_NAME), stages);
+        }
+        cachedStages.put(run, stages);
+    }
+
+    /**
+     * @return the stages of the build kept in memory or null if there are none
+     */
+    @CheckForNull
+    static List<Stage> getCachedStages(WorkflowRun run) {
+        return cachedStages.get(run);
+    }
+
+    static List<Stage> scan(WorkflowRun run) {
+        List<StageNodeExt> nodes = FlowNodes.getSortedStageNodes(run);
+        List<Stage> stages = new ArrayList<>(nodes.size());
+        for (StageNodeExt node : nodes) {
+            if (node != null) {
+                stages.add(new Stage(node.getName(), node.getStatus(), node.getDurationMillis()));
+            }
+        }
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * @return the stored stages or null if there are none or they cannot be read
+     */
+    @CheckForNull
+    static List<Stage> read(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FILE_VERSION) {
+                LOGGER.info("Ignoring stages {} written in an unknown format", file);
+                return null;
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid stage count " + count);
+            }
+            List<Stage> stages = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                String name = in.readBoolean() ? in.readUTF() : null;
+                StatusExt status = in.readBoolean() ? StatusExt.valueOf(in.readUTF()) : null;
+                stages.add(new Stage(name, status, in.readLong()));
+            }
+            return Collections.unmodifiableList(stages);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Unable to read the stages from {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the stages to a temporary file and moves it to the given one, so a reader never sees a partial file.
+     */
+    static void write(Path file, List<Stage> stages) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeInt(stages.size());
+                for (Stage stage : stages) {
+                    out.writeBoolean(stage.getName() != null);
+                    if (stage.getName() != null) {
+                        out.writeUTF(stage.getName());
+                    }
+                    out.writeBoolean(stage.getStatus() != null);
+                    if (stage.getStatus() != null) {
+                        out.writeUTF(stage.getStatus().name());
+                    }
+                    out.writeLong(stage.getDurationMillis());
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the stages in {}", file, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    LOGGER.debug("Unable to delete {}", temp, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The values of a stage the stage metrics are calculated from.
+     */
+    public static final class Stage {
+
+        @CheckForNull
+        private final String name;
+        @CheckForNull
+        private final StatusExt status;
+        private final long durationMillis;
+
+        Stage(@CheckForNull String name, @CheckForNull StatusExt status, long durationMillis) {
+            this.name = name;
+            this.status = status;
+            this.durationMillis = durationMillis;
+        }
+
+        @CheckForNull
+        public String getName() {
+            return name;
+        }
+
+        @CheckForNull
+        public StatusExt getStatus() {
+            return status;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.jenkinsci.plugins.prometheus.collectors.builds;
 
-import com.cloudbees.workflow.rest.external.StageNodeExt;
 import com.cloudbees.workflow.rest.external.StatusExt;
 import hudson.model.Job;
 import hudson.model.Run;
@@ -15,8 +14,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
-import static org.jenkinsci.plugins.prometheus.util.FlowNodes.getSortedStageNodes;
-
 public class StageSummary extends BuildsMetricCollector<Run<?, ?>, Summary> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StageSummary.class);
@@ -59,16 +56,14 @@ public class StageSummary extends BuildsMetricCollector<Run<?, ?>, Summary> {
     }
 
     private void processPipelineRunStages(Job job, WorkflowRun workflowRun, String[] labelValues) {
-        List<StageNodeExt> stages = getSortedStageNodes(workflowRun);
-        for (StageNodeExt stage : stages) {
-            if (stage != null) {
-                observeStage(job, workflowRun, stage, labelValues);
-            }
+        List<StageRecords.Stage> stages = StageRecords.getStages(workflowRun);
+        for (StageRecords.Stage stage : stages) {
+            observeStage(job, workflowRun, stage, labelValues);
         }
     }
 
 
-    private void observeStage(Job job, Run run, StageNodeExt stage, String[] labelValues) {
+    private void observeStage(Job job, Run run, StageRecords.Stage stage, String[] labelValues) {
 
         LOGGER.debug("Observing stage[{}] in run [{}] from job [{}]", stage.getName(), run.getNumber(), job.getName());
         String stageName = stage.getName();
@@ -79,7 +74,7 @@ public class StageSummary extends BuildsMetricCollector<Run<?, ?>, Summary> {
             LOGGER.debug("getting duration for stage[{}] in run [{}] from job [{}]", stage.getName(), run.getNumber(), job.getName());
             long duration = stage.getDurationMillis();
             LOGGER.debug("duration was [{}] for stage[{}] in run [{}] from job [{}]", duration, stage.getName(), run.getNumber(), job.getName());
-            collector.labels(values).observe(duration);
+            collector.labels(limitCardinality(values)).observe(duration);
         } else {
             LOGGER.debug("Stage[{}] in run [{}] from job [{}] was not successful and will be ignored", stage.getName(), run.getNumber(), job.getName());
         }
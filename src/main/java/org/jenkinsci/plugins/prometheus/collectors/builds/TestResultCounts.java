@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.tasks.test.AbstractTestResultAction;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.jenkinsci.plugins.prometheus.util.BuildCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * The test result counts of completed builds, shared by the test metrics. Getting the test results of a build may load
+ * its test reports, so the counts are taken once when the build completes and stored with the build as a
+ * {@link Snapshot}, or taken on first use for older builds, and kept in memory as they never change anymore.
+ */
+public final class TestResultCounts {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestResultCounts.class);
+
+    // marks builds known to have no test results
+    private static final TestResultCounts NONE = new TestResultCounts(-1, -1, -1);
+    // counts of completed builds
+    private static final BuildCache<TestResultCounts> cachedCounts = new BuildCache<>(TestResultCounts.class);
+
+    private final int total;
+    private final int failed;
+    private final int skipped;
+
+    TestResultCounts(int total, int failed, int skipped) {
+        this.total = total;
+        this.failed = failed;
+        this.skipped = skipped;
+    }
+
+    /**
+     * @return the test result counts of the build or null if it has no test results
+     */
+    @CheckForNull
+    public static TestResultCounts of(Run<?, ?> run) {
+        if (run.isBuilding()) {
+            return read(run);
+        }
+        TestResultCounts counts = cachedCounts.get(run);
+        if (counts == null) {
+            Snapshot snapshot = run.getAction(Snapshot.class);
+            counts = snapshot != null ? snapshot.getCounts() : read(run);
+            // a build without test results is only cached by the snapshot, after which none can be attached anymore
+            if (counts != null) {
+                cachedCounts.put(run, counts);
+            }
+        }
+        return counts == NONE ? null : counts;
+    }
+
+    @CheckForNull
+    private static TestResultCounts read(Run<?, ?> run) {
+        AbstractTestResultAction<?> action = run.getAction(AbstractTestResultAction.class);
+        if (action == null) {
+            return null;
+        }
+        return new TestResultCounts(action.getTotalCount(), action.getFailCount(), action.getSkipCount());
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * The test result counts of a completed build, stored in its build.xml so they are known without its test results
+     * once the build has been dropped from the cache or from memory, or after a restart.
+     */
+    public static final class Snapshot extends InvisibleAction {
+
+        private final int total;
+        private final int failed;
+        private final int skipped;
+
+        Snapshot(TestResultCounts counts) {
+            this.total = counts.total;
+            this.failed = counts.failed;
+            this.skipped = counts.skipped;
+        }
+
+        TestResultCounts getCounts() {
+            return total < 0 ? NONE : new TestResultCounts(total, failed, skipped);
+        }
+    }
+
+    @Extension
+    public static class SnapshotListener extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+            PrometheusConfiguration configuration = PrometheusConfiguration.get();
+            if (configuration != null && configuration.isFetchTestResults()) {
+                TestResultCounts counts = read(run);
+                counts = counts == null ? NONE : counts;
+                cachedCounts.put(run, counts);
+                run.addOrReplaceAction(new Snapshot(counts));
+                try {
+                    run.save();
+                } catch (IOException e) {
+                    LOGGER.debug("Unable to store the test result counts of build {}", run, e);
+                }
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package org.jenkinsci.plugins.prometheus.collectors.builds;
 
 import hudson.model.Run;
-import hudson.tasks.test.AbstractTestResultAction;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.SimpleCollector;
 import org.jenkinsci.plugins.prometheus.collectors.CollectorType;
@@ -33,7 +32,7 @@ public class TotalTestsGauge extends TestBasedMetricCollector<Run<?, ?>, Gauge>
             return;
         }
 
-        int testsTotal = jenkinsObject.getAction(AbstractTestResultAction.class).getTotalCount();
-        this.collector.labels(labelValues).set(testsTotal);
+        int testsTotal = getTestResultCounts(jenkinsObject).getTotal();
+        this.collector.labels(limitCardinality(labelValues)).set(testsTotal);
     }
 }
@@ -36,12 +36,12 @@ public class CoverageClassPercentGauge extends CoverageMetricsCollector<Run<?, ?
 
         Optional<Coverage> optional = getCoverage(jenkinsObject, Metric.CLASS, Baseline.PROJECT);
         if (optional.isEmpty()) {
-            collector.labels(labelValues).set(-1);
+            collector.labels(limitCardinality(labelValues)).set(-1);
             return;
         }
 
         Coverage coverage = optional.get();
-        collector.labels(labelValues).set(calculatePercentage(coverage));
+        collector.labels(limitCardinality(labelValues)).set(calculatePercentage(coverage));
     }
 
 }
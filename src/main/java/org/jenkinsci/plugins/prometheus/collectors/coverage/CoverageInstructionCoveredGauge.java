@@ -36,11 +36,11 @@ public class CoverageInstructionCoveredGauge extends CoverageMetricsCollector<Ru
 
         Optional<Coverage> optional = getCoverage(jenkinsObject, Metric.INSTRUCTION, Baseline.PROJECT);
         if (optional.isEmpty()) {
-            collector.labels(labelValues).set(-1);
+            collector.labels(limitCardinality(labelValues)).set(-1);
             return;
         }
 
         Coverage coverage = optional.get();
-        collector.labels(labelValues).set(coverage.getCovered());
+        collector.labels(limitCardinality(labelValues)).set(coverage.getCovered());
     }
 }
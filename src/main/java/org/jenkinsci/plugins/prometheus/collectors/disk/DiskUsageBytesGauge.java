@@ -38,6 +38,6 @@ public class DiskUsageBytesGauge extends BaseMetricCollector<DiskItem, Gauge> {
             return;
         }
 
-        this.collector.labels(labelValues).set(usage * 1024);
+        this.collector.labels(limitCardinality(labelValues)).set(usage * 1024);
     }
 }
@@ -36,6 +36,6 @@ public class DiskUsageFileCountGauge extends BaseMetricCollector<DiskItem, Gauge
         if (count == null) {
             return;
         }
-        this.collector.labels(labelValues).set(count);
+        this.collector.labels(limitCardinality(labelValues)).set(count);
     }
 }
@@ -40,10 +40,10 @@ public class FileStoreAvailableGauge extends BaseMetricCollector<FileStore, Gaug
             return;
         }
         try {
-            this.collector.labels(labelValues).set(jenkinsObject.getUsableSpace());
+            this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getUsableSpace());
         } catch (IOException | RuntimeException e) {
             LOGGER.debug("Failed to get usable space of {}", jenkinsObject, e);
-            this.collector.labels(labelValues).set(Double.NaN);
+            this.collector.labels(limitCardinality(labelValues)).set(Double.NaN);
         }
     }
 }
@@ -40,10 +40,10 @@ public class FileStoreCapacityGauge extends BaseMetricCollector<FileStore, Gauge
             return;
         }
         try {
-            this.collector.labels(labelValues).set(jenkinsObject.getTotalSpace());
+            this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getTotalSpace());
         } catch (IOException e) {
             LOGGER.debug("Failed to get total space of {}", jenkinsObject, e);
-            this.collector.labels(labelValues).set(Double.NaN);
+            this.collector.labels(limitCardinality(labelValues)).set(Double.NaN);
         }
     }
 }
@@ -37,6 +37,6 @@ public class JobUsageBytesGauge extends BaseMetricCollector<JobDiskItem, Gauge>
             return;
         }
 
-        this.collector.labels(labelValues).set(usage * 1024);
+        this.collector.labels(limitCardinality(labelValues)).set(usage * 1024);
     }
 }
@@ -33,6 +33,6 @@ public class ExecutorsAvailableGauge extends BaseMetricCollector<LoadStatistics.
         if (jenkinsObject == null) {
             return;
         }
-        this.collector.labels(labelValues).set(jenkinsObject.getAvailableExecutors());
+        this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getAvailableExecutors());
     }
 }
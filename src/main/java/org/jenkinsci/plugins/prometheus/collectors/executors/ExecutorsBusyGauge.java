@@ -33,6 +33,6 @@ public class ExecutorsBusyGauge extends BaseMetricCollector<LoadStatistics.LoadS
         if (jenkinsObject == null) {
             return;
         }
-        this.collector.labels(labelValues).set(jenkinsObject.getBusyExecutors());
+        this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getBusyExecutors());
     }
 }
@@ -33,6 +33,6 @@ public class ExecutorsConnectingGauge extends BaseMetricCollector<LoadStatistics
         if (jenkinsObject == null) {
             return;
         }
-        this.collector.labels(labelValues).set(jenkinsObject.getConnectingExecutors());
+        this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getConnectingExecutors());
     }
 }
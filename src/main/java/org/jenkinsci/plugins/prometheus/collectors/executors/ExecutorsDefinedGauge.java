@@ -33,6 +33,6 @@ public class ExecutorsDefinedGauge extends BaseMetricCollector<LoadStatistics.Lo
         if (jenkinsObject == null) {
             return;
         }
-        this.collector.labels(labelValues).set(jenkinsObject.getDefinedExecutors());
+        this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getDefinedExecutors());
     }
 }
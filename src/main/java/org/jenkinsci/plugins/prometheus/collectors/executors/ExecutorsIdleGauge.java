@@ -33,6 +33,6 @@ public class ExecutorsIdleGauge extends BaseMetricCollector<LoadStatistics.LoadS
         if (jenkinsObject == null) {
             return;
         }
-        this.collector.labels(labelValues).set(jenkinsObject.getIdleExecutors());
+        this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getIdleExecutors());
     }
 }
@@ -33,6 +33,6 @@ public class ExecutorsOnlineGauge extends BaseMetricCollector<LoadStatistics.Loa
         if (jenkinsObject == null) {
             return;
         }
-        this.collector.labels(labelValues).set(jenkinsObject.getOnlineExecutors());
+        this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getOnlineExecutors());
     }
 }
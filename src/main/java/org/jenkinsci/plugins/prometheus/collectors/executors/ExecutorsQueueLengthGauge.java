@@ -33,6 +33,6 @@ public class ExecutorsQueueLengthGauge extends BaseMetricCollector<LoadStatistic
         if (jenkinsObject == null) {
             return;
         }
-        this.collector.labels(labelValues).set(jenkinsObject.getQueueLength());
+        this.collector.labels(limitCardinality(labelValues)).set(jenkinsObject.getQueueLength());
     }
 }
@@ -42,9 +42,9 @@ public class NodesOnlineGauge extends BaseMetricCollector<Jenkins, Gauge> {
             }
 
             if (comp.isOnline()) { // https://javadoc.jenkins.io/hudson/model/Computer.html
-                this.collector.labels(node.getNodeName()).set(1);
+                this.collector.labels(limitCardinality(node.getNodeName())).set(1);
             } else {
-                this.collector.labels(node.getNodeName()).set(0);
+                this.collector.labels(limitCardinality(node.getNodeName())).set(0);
             }
         }
     }
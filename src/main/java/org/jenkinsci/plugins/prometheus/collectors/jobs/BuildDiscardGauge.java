@@ -32,6 +32,6 @@ public class BuildDiscardGauge extends BuildsMetricCollector<Job<?, ?>, Gauge> {
     public void calculateMetric(Job<?, ?> jenkinsObject, String[] labelValues) {
         BuildDiscarder buildDiscarder = jenkinsObject.getBuildDiscarder();
         double status = buildDiscarder != null ? 1.0 : 0.0;
-        this.collector.labels(labelValues).set(status);
+        this.collector.labels(limitCardinality(labelValues)).set(status);
     }
 }
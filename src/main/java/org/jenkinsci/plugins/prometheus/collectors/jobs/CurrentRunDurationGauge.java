@@ -39,7 +39,7 @@ public class CurrentRunDurationGauge extends BuildsMetricCollector<Job<?, ?>, Ga
             // Using Clock to be able to mock in test
             long end = Clock.systemUTC().millis();
             long duration = Math.max(end - start, 0);
-            this.collector.labels(labelValues).set(duration);
+            this.collector.labels(limitCardinality(labelValues)).set(duration);
         }
     }
 }
@@ -0,0 +1,58 @@
+package org.jenkinsci.plugins.prometheus.collectors.jobs;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.SimpleCollector;
+import org.apache.commons.lang3.ArrayUtils;
+import org.jenkinsci.plugins.prometheus.collectors.CollectorType;
+import org.jenkinsci.plugins.prometheus.collectors.builds.BuildsMetricCollector;
+import org.jenkinsci.plugins.prometheus.collectors.builds.StageRecorder;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CurrentStageDurationGauge extends BuildsMetricCollector<Job<?, ?>, Gauge> {
+
+    protected CurrentStageDurationGauge(String[] labelNames, String namespace, String subSystem) {
+        super(labelNames, namespace, subSystem);
+    }
+
+    @Override
+    protected CollectorType getCollectorType() {
+        return CollectorType.CURRENT_STAGE_DURATION_GAUGE;
+    }
+
+    @Override
+    protected String getHelpText() {
+        return "Indicates the runtime of the stages currently running in the run currently building";
+    }
+
+    @Override
+    protected SimpleCollector.Builder<?, Gauge> getCollectorBuilder() {
+        return Gauge.build();
+    }
+
+    /**
+     * @param labelValues - the base label values of the job, the stage is added as the last label
+     */
+    @Override
+    public void calculateMetric(Job jenkinsObject, String[] labelValues) {
+        Run runningBuild = jenkinsObject.getLastBuild();
+        if (runningBuild instanceof WorkflowRun && runningBuild.isBuilding()) {
+            // Using Clock to be able to mock in test
+            long now = Clock.systemUTC().millis();
+            // stages of parallel branches sharing a name are one series, which shows the one running the longest
+            Map<String, Long> startMillisByName = new HashMap<>();
+            for (StageRecorder.RunningStage stage : StageRecorder.getRunningStages((WorkflowRun) runningBuild).values()) {
+                startMillisByName.merge(stage.getName(), stage.getStartMillis(), Math::min);
+            }
+            for (Map.Entry<String, Long> stage : startMillisByName.entrySet()) {
+                long duration = Math.max(now - stage.getValue(), 0);
+                this.collector.labels(limitCardinality(ArrayUtils.add(labelValues, stage.getKey()))).set(duration);
+            }
+        }
+    }
+}
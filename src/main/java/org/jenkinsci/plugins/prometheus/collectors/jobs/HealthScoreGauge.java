@@ -30,7 +30,7 @@ public class HealthScoreGauge extends BuildsMetricCollector<Job<?, ?>, Gauge> {
     @Override
     public void calculateMetric(Job<?, ?> jenkinsObject, String[] labelValues) {
         int score = jenkinsObject.getBuildHealth().getScore();
-        this.collector.labels(labelValues).set(score);
+        this.collector.labels(limitCardinality(labelValues)).set(score);
     }
 
 }
@@ -0,0 +1,132 @@
+package org.jenkinsci.plugins.prometheus.collectors.jobs;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks which jobs changed, fed by build and item events. Every change of a job gets a new stamp, so a collector can
+ * tell whether the metrics it calculated for a job are still current by comparing the stamp it calculated them at.
+ * Saving the plugin configuration changes all jobs at once.
+ */
+public final class JobChangeTracker {
+
+    private static final AtomicLong sequence = new AtomicLong();
+    // last change of each job which changed since Jenkins started, by full name
+    private static final Map<String, Long> jobChanges = new ConcurrentHashMap<>();
+    private static volatile long allJobsChanged = 0L;
+
+    private JobChangeTracker() {
+        // prevents creating new instances
+    }
+
+    /**
+     * @return the stamp of the latest change of the job, metrics calculated at a different stamp may be outdated
+     */
+    public static long getChangeStamp(String fullName) {
+        return Math.max(allJobsChanged, jobChanges.getOrDefault(fullName, 0L));
+    }
+
+    /**
+     * @return the stamp of the latest change of the plugin configuration
+     */
+    public static long getConfigurationChangeStamp() {
+        return allJobsChanged;
+    }
+
+    static void jobChanged(String fullName) {
+        jobChanges.put(fullName, sequence.incrementAndGet());
+    }
+
+    /**
+     * Removes the job or folder with the given full name and all items within it.
+     */
+    static void jobRemoved(String fullName) {
+        jobChanges.remove(fullName);
+        String prefix = fullName + "/";
+        jobChanges.keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    static void allJobsChanged() {
+        allJobsChanged = sequence.incrementAndGet();
+    }
+
+    @Extension
+    public static class RunChangeListener extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onStarted(Run<?, ?> run, TaskListener listener) {
+            jobChanged(run.getParent().getFullName());
+        }
+
+        @Override
+        public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+            jobChanged(run.getParent().getFullName());
+        }
+
+        @Override
+        public void onFinalized(Run<?, ?> run) {
+            jobChanged(run.getParent().getFullName());
+        }
+
+        @Override
+        public void onDeleted(Run<?, ?> run) {
+            jobChanged(run.getParent().getFullName());
+        }
+    }
+
+    @Extension
+    public static class ItemChangeListener extends ItemListener {
+
+        @Override
+        public void onCreated(Item item) {
+            // a job may be created again under the name of a deleted one
+            jobChanged(item.getFullName());
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            if (item instanceof Job) {
+                jobChanged(item.getFullName());
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            jobRemoved(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            jobRemoved(oldFullName);
+            jobChanged(newFullName);
+        }
+    }
+
+    /**
+     * The labels and the builds taken into account depend on the plugin configuration.
+     */
+    @Extension
+    public static class ConfigurationChangeListener extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable saveable, XmlFile file) {
+            if (saveable instanceof PrometheusConfiguration) {
+                allJobsChanged();
+            }
+        }
+    }
+}
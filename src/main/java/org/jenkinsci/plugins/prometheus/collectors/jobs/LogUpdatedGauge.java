@@ -32,7 +32,7 @@ public class LogUpdatedGauge extends BuildsMetricCollector<Job<?, ?>, Gauge> {
 
         if (jenkinsObject != null && jenkinsObject.isBuilding()) {
             boolean logUpdated = jenkinsObject.isLogUpdated();
-            this.collector.labels(labelValues).set(logUpdated ? 1.0 : 0.0);
+            this.collector.labels(limitCardinality(labelValues)).set(logUpdated ? 1.0 : 0.0);
         }
     }
 }
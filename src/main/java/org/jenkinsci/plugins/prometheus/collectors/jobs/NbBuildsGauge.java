@@ -35,7 +35,7 @@ public class NbBuildsGauge extends BuildsMetricCollector<Job<?, ?>, Gauge> {
         lock.readLock().lock();
         try  {
             int nbBuilds = jenkinsObject.getBuildsAsMap().size();
-            this.collector.labels(labelValues).set(nbBuilds);
+            this.collector.labels(limitCardinality(labelValues)).set(nbBuilds);
         } finally {
             lock.readLock().unlock();
         }
@@ -16,6 +16,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -34,6 +35,8 @@ public class PrometheusConfiguration extends GlobalConfiguration {
     static final String COLLECTING_METRICS_PERIOD_IN_SECONDS = "COLLECTING_METRICS_PERIOD_IN_SECONDS";
     static final long DEFAULT_COLLECTING_METRICS_PERIOD_IN_SECONDS = TimeUnit.MINUTES.toSeconds(2);
     static final String COLLECT_DISK_USAGE = "COLLECT_DISK_USAGE";
+    static final long DEFAULT_COLLECTOR_TIMEOUT_IN_SECONDS = 30L;
+    static final long DEFAULT_SCRAPE_COLLECTION_TIMEOUT_IN_SECONDS = 30L;
 
     private String urlName = null;
     private String additionalPath;
@@ -41,6 +44,24 @@ public class PrometheusConfiguration extends GlobalConfiguration {
     private String jobAttributeName = "jenkins_job";
     private boolean useAuthenticatedEndpoint;
     private long collectingMetricsPeriodInSeconds = -1L;
+    private boolean compressMetrics = false;
+    private boolean renderOpenMetrics = false;
+    private boolean collectInParallel = false;
+    private long collectorTimeoutInSeconds = DEFAULT_COLLECTOR_TIMEOUT_IN_SECONDS;
+    private String collectorIntervals = "";
+    private int maxSeriesPerMetric = 0;
+    private int jobShards = 1;
+    private int jobTraversalParallelism = 1;
+    private boolean incrementalJobMetrics = false;
+    private boolean accumulateBuildDurations = false;
+    private boolean loadedBuildsOnly = false;
+    private boolean indexBuilds = false;
+    private boolean storeStages = false;
+    private boolean recordStages = false;
+    private boolean collectOnScrape = false;
+    private boolean persistMetrics = false;
+    private long scrapeCollectionTimeoutInSeconds = DEFAULT_SCRAPE_COLLECTION_TIMEOUT_IN_SECONDS;
+    private long maxSnapshotAgeInSeconds = 0L;
 
     private boolean countSuccessfulBuilds = true;
     private boolean countUnstableBuilds = true;
@@ -174,6 +195,185 @@ public class PrometheusConfiguration extends GlobalConfiguration {
         this.useAuthenticatedEndpoint = useAuthenticatedEndpoint;
     }
 
+    public boolean isCompressMetrics() {
+        return compressMetrics;
+    }
+
+    @DataBoundSetter
+    public void setCompressMetrics(boolean compressMetrics) {
+        this.compressMetrics = compressMetrics;
+    }
+
+    public boolean isRenderOpenMetrics() {
+        return renderOpenMetrics;
+    }
+
+    @DataBoundSetter
+    public void setRenderOpenMetrics(boolean renderOpenMetrics) {
+        this.renderOpenMetrics = renderOpenMetrics;
+    }
+
+    public boolean isCollectInParallel() {
+        return collectInParallel;
+    }
+
+    @DataBoundSetter
+    public void setCollectInParallel(boolean collectInParallel) {
+        this.collectInParallel = collectInParallel;
+    }
+
+    public long getCollectorTimeoutInSeconds() {
+        return collectorTimeoutInSeconds;
+    }
+
+    @DataBoundSetter
+    public void setCollectorTimeoutInSeconds(long collectorTimeoutInSeconds) {
+        this.collectorTimeoutInSeconds = collectorTimeoutInSeconds > 0 ? collectorTimeoutInSeconds : DEFAULT_COLLECTOR_TIMEOUT_IN_SECONDS;
+    }
+
+    public boolean isCollectOnScrape() {
+        return collectOnScrape;
+    }
+
+    @DataBoundSetter
+    public void setCollectOnScrape(boolean collectOnScrape) {
+        this.collectOnScrape = collectOnScrape;
+    }
+
+    public boolean isPersistMetrics() {
+        return persistMetrics;
+    }
+
+    @DataBoundSetter
+    public void setPersistMetrics(boolean persistMetrics) {
+        this.persistMetrics = persistMetrics;
+    }
+
+    public long getScrapeCollectionTimeoutInSeconds() {
+        return scrapeCollectionTimeoutInSeconds;
+    }
+
+    @DataBoundSetter
+    public void setScrapeCollectionTimeoutInSeconds(long scrapeCollectionTimeoutInSeconds) {
+        this.scrapeCollectionTimeoutInSeconds = scrapeCollectionTimeoutInSeconds > 0
+                ? scrapeCollectionTimeoutInSeconds : DEFAULT_SCRAPE_COLLECTION_TIMEOUT_IN_SECONDS;
+    }
+
+    public long getMaxSnapshotAgeInSeconds() {
+        return maxSnapshotAgeInSeconds;
+    }
+
+    @DataBoundSetter
+    public void setMaxSnapshotAgeInSeconds(long maxSnapshotAgeInSeconds) {
+        this.maxSnapshotAgeInSeconds = Math.max(0L, maxSnapshotAgeInSeconds);
+    }
+
+    public String getCollectorIntervals() {
+        return collectorIntervals;
+    }
+
+    @DataBoundSetter
+    public void setCollectorIntervals(String collectorIntervals) {
+        this.collectorIntervals = collectorIntervals;
+    }
+
+    /**
+     * @return the refresh interval in seconds per collector name, collectors not contained use the collecting metrics period
+     */
+    public Map<String, Long> getCollectorIntervalsInSeconds() {
+        Map<String, Long> intervals = new HashMap<>();
+        for (String entry : parseParameterNamesFromStringSeparatedByComma(collectorIntervals)) {
+            long seconds = parseCollectorInterval(entry);
+            if (seconds > 0) {
+                intervals.put(entry.substring(0, entry.indexOf('=')).trim(), seconds);
+            } else {
+                logger.warn("Ignoring collector interval '{}'. Must be of the form <collector>=<positive seconds>", entry);
+            }
+        }
+        return intervals;
+    }
+
+    public int getMaxSeriesPerMetric() {
+        return maxSeriesPerMetric;
+    }
+
+    @DataBoundSetter
+    public void setMaxSeriesPerMetric(int maxSeriesPerMetric) {
+        this.maxSeriesPerMetric = Math.max(0, maxSeriesPerMetric);
+    }
+
+    public boolean isIncrementalJobMetrics() {
+        return incrementalJobMetrics;
+    }
+
+    @DataBoundSetter
+    public void setIncrementalJobMetrics(boolean incrementalJobMetrics) {
+        this.incrementalJobMetrics = incrementalJobMetrics;
+    }
+
+    public boolean isAccumulateBuildDurations() {
+        return accumulateBuildDurations;
+    }
+
+    @DataBoundSetter
+    public void setAccumulateBuildDurations(boolean accumulateBuildDurations) {
+        this.accumulateBuildDurations = accumulateBuildDurations;
+    }
+
+    public boolean isLoadedBuildsOnly() {
+        return loadedBuildsOnly;
+    }
+
+    @DataBoundSetter
+    public void setLoadedBuildsOnly(boolean loadedBuildsOnly) {
+        this.loadedBuildsOnly = loadedBuildsOnly;
+    }
+
+    public boolean isIndexBuilds() {
+        return indexBuilds;
+    }
+
+    @DataBoundSetter
+    public void setIndexBuilds(boolean indexBuilds) {
+        this.indexBuilds = indexBuilds;
+    }
+
+    public boolean isStoreStages() {
+        return storeStages;
+    }
+
+    @DataBoundSetter
+    public void setStoreStages(boolean storeStages) {
+        this.storeStages = storeStages;
+    }
+
+    public boolean isRecordStages() {
+        return recordStages;
+    }
+
+    @DataBoundSetter
+    public void setRecordStages(boolean recordStages) {
+        this.recordStages = recordStages;
+    }
+
+    public int getJobShards() {
+        return jobShards;
+    }
+
+    @DataBoundSetter
+    public void setJobShards(int jobShards) {
+        this.jobShards = Math.max(1, jobShards);
+    }
+
+    public int getJobTraversalParallelism() {
+        return jobTraversalParallelism;
+    }
+
+    @DataBoundSetter
+    public void setJobTraversalParallelism(int jobTraversalParallelism) {
+        this.jobTraversalParallelism = Math.max(1, jobTraversalParallelism);
+    }
+
     public boolean isCountSuccessfulBuilds() {
         return countSuccessfulBuilds;
     }
@@ -337,6 +537,28 @@ public class PrometheusConfiguration extends GlobalConfiguration {
         return FormValidation.error("CollectingMetricsPeriodInSeconds must be a positive value");
     }
 
+    public FormValidation doCheckCollectorIntervals(@QueryParameter String value) {
+        for (String entry : parseParameterNamesFromStringSeparatedByComma(value)) {
+            if (parseCollectorInterval(entry) <= 0) {
+                return FormValidation.error("Collector interval '" + entry + "' must be of the form <collector>=<positive seconds>");
+            }
+        }
+        return FormValidation.ok();
+    }
+
+    private static long parseCollectorInterval(String entry) {
+        String[] parts = entry.split("\\s*=\\s*");
+        if (parts.length != 2 || parts[0].isEmpty()) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(parts[1]);
+        } catch (NumberFormatException ignore) {
+            // ignore exception. If it comes it's not a positive long
+            return -1L;
+        }
+    }
+
     private long parseLongFromEnv() {
         Map<String, String> env = System.getenv();
         String message = String.format("COLLECTING_METRICS_PERIOD_IN_SECONDS must be a positive integer. The default value: '%d' will be used instead of provided.", DEFAULT_COLLECTING_METRICS_PERIOD_IN_SECONDS);
@@ -0,0 +1,156 @@
+package org.jenkinsci.plugins.prometheus.config.disabledmetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The entries of a {@link DisabledMetricConfig} compiled once: the regular expressions of each kind are combined into a
+ * single pattern and the disabled names are kept in a hash set. Decisions are memoized per name, as the same metric
+ * and job names are checked again on every collection cycle.
+ * <p>
+ * The job decisions form an index of all jobs checked so far, keyed by full name. It is not bounded, as entries of
+ * deleted, moved and renamed jobs are removed by {@link #forgetJob(String)}, so it follows the jobs of the instance.
+ */
+final class CompiledMetricFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledMetricFilter.class);
+
+    // bounds the memoized metric decisions, names checked after the limit is reached are matched every time
+    static final int MAX_CACHED_DECISIONS = 10_000;
+
+    // back references and named groups refer to group numbers and names, which change when patterns are combined
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+
+    private final Set<String> disabledMetricNames = new HashSet<>();
+    private final Predicate<String> disabledMetricRegex;
+    private final Predicate<String> disabledJobRegex;
+
+    private final Map<String, Boolean> metricDecisions = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> jobDecisions = new ConcurrentHashMap<>();
+
+    CompiledMetricFilter(List<Entry> entries) {
+        List<String> metricRegexes = new ArrayList<>();
+        List<String> jobRegexes = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry instanceof RegexDisabledMetric) {
+                metricRegexes.add(((RegexDisabledMetric) entry).getRegex());
+            } else if (entry instanceof NamedDisabledMetric) {
+                String metricName = ((NamedDisabledMetric) entry).getMetricName();
+                if (metricName != null) {
+                    disabledMetricNames.add(metricName.toLowerCase(Locale.ROOT));
+                }
+            } else if (entry instanceof JobRegexDisabledMetric) {
+                jobRegexes.add(((JobRegexDisabledMetric) entry).getRegex());
+            }
+        }
+        disabledMetricRegex = compile(metricRegexes);
+        disabledJobRegex = compile(jobRegexes);
+    }
+
+    boolean isMetricEnabled(String metricName) {
+        Boolean decision = metricDecisions.get(metricName);
+        if (decision != null) {
+            return decision;
+        }
+        boolean enabled = computeMetricEnabled(metricName);
+        if (metricDecisions.size() < MAX_CACHED_DECISIONS) {
+            metricDecisions.put(metricName, enabled);
+        }
+        return enabled;
+    }
+
+    boolean isJobEnabled(String jobName) {
+        return jobDecisions.computeIfAbsent(jobName, this::computeJobEnabled);
+    }
+
+    /**
+     * Removes the decisions of the job or folder with the given full name and of all items within it.
+     */
+    void forgetJob(String fullName) {
+        jobDecisions.remove(fullName);
+        String prefix = fullName + "/";
+        jobDecisions.keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    int getIndexedJobCount() {
+        return jobDecisions.size();
+    }
+
+    private boolean computeMetricEnabled(String metricName) {
+        if (disabledMetricRegex.test(metricName)) {
+            LOGGER.debug("Metric named '{}' is disabled via Jenkins Prometheus Plugin configuration. Reason: Regex", metricName);
+            return false;
+        }
+        if (disabledMetricNames.contains(metricName.toLowerCase(Locale.ROOT))) {
+            LOGGER.debug("Metric named '{}' is disabled via Jenkins Prometheus Plugin configuration. Reason: Named", metricName);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean computeJobEnabled(String jobName) {
+        if (disabledJobRegex.test(jobName)) {
+            LOGGER.debug("Job named '{}' is disabled via Jenkins Prometheus Plugin configuration. Reason: JobRegexDisabledMetric", jobName);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return a predicate matching any of the given regular expressions as a whole
+     */
+    private static Predicate<String> compile(List<String> regexes) {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String regex : regexes) {
+            if (regex == null) {
+                continue;
+            }
+            try {
+                patterns.add(Pattern.compile(regex));
+            } catch (PatternSyntaxException e) {
+                LOGGER.warn("Ignoring invalid regular expression '{}' of the disabled metrics configuration", regex, e);
+            }
+        }
+        if (patterns.isEmpty()) {
+            return name -> false;
+        }
+        if (patterns.size() == 1) {
+            return patterns.get(0).asMatchPredicate();
+        }
+        boolean combinable = patterns.stream().noneMatch(pattern -> GROUP_REFERENCE.matcher(pattern.pattern()).find());
+        if (combinable) {
+            StringBuilder combined = new StringBuilder();
+            for (Pattern pattern : patterns) {
+                if (combined.length() > 0) {
+                    combined.append('|');
+                }
+                combined.append("(?:").append(pattern.pattern()).append(')');
+            }
+            try {
+                return Pattern.compile(combined.toString()).asMatchPredicate();
+            } catch (PatternSyntaxException e) {
+                LOGGER.debug("Cannot combine the regular expressions of the disabled metrics configuration", e);
+            }
+        }
+        // each pattern has to be matched on its own
+        return name -> {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(name).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+}
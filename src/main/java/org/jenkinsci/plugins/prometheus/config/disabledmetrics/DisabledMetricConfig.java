@@ -13,6 +13,9 @@ public class DisabledMetricConfig extends AbstractDescribableImpl<DisabledMetric
 
     private final List<Entry> entries;
 
+    // compiled on first use, a new configuration is bound on every save of the global configuration
+    private transient volatile CompiledMetricFilter compiledFilter;
+
     @DataBoundConstructor
     public DisabledMetricConfig(List<Entry> entries) {
         this.entries = entries != null ? new ArrayList<>(entries) : Collections.emptyList();
@@ -22,6 +25,15 @@ public class DisabledMetricConfig extends AbstractDescribableImpl<DisabledMetric
         return Collections.unmodifiableList(entries);
     }
 
+    CompiledMetricFilter getCompiledFilter() {
+        CompiledMetricFilter filter = compiledFilter;
+        if (filter == null) {
+            filter = new CompiledMetricFilter(entries);
+            compiledFilter = filter;
+        }
+        return filter;
+    }
+
     @Extension
     public static class DescriptorImpl extends Descriptor<DisabledMetricConfig> {
     }
@@ -2,43 +2,61 @@ package org.jenkinsci.plugins.prometheus.config.disabledmetrics;
 
 import io.prometheus.client.Collector;
 
-import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
+/**
+ * Skips disabled metric families while they are consumed. The families are pulled from the underlying iterator one at
+ * a time, so no second list of all families is built up.
+ */
 public class FilteredMetricEnumeration implements Enumeration<Collector.MetricFamilySamples> {
 
-    private final Iterator<Collector.MetricFamilySamples> filteredList;
+    private final Iterator<Collector.MetricFamilySamples> fullList;
+    // the configuration is looked up once per enumeration, not for every family
+    private final Predicate<String> enabled = MetricStatusChecker.metricFilter();
+
+    // the next enabled family, null if it has not been looked up yet or there is none
+    private Collector.MetricFamilySamples next;
 
     public FilteredMetricEnumeration(Iterator<Collector.MetricFamilySamples> fullList) {
-        this.filteredList = filterList(fullList);
+        this.fullList = fullList;
     }
 
-    private Iterator<Collector.MetricFamilySamples> filterList(Iterator<Collector.MetricFamilySamples> fullList) {
-        List<Collector.MetricFamilySamples> filteredList = new ArrayList<>();
-        while (fullList.hasNext()) {
+    @Override
+    public boolean hasMoreElements() {
+        while (next == null && fullList.hasNext()) {
             Collector.MetricFamilySamples familySamples = fullList.next();
-            if (MetricStatusChecker.isEnabled(familySamples.name)) {
-                filteredList.add(familySamples);
+            if (enabled.test(familySamples.name)) {
+                next = familySamples;
             }
         }
-        return filteredList.iterator();
-    }
-
-
-    @Override
-    public boolean hasMoreElements() {
-        return filteredList.hasNext();
+        return next != null;
     }
 
     @Override
     public Collector.MetricFamilySamples nextElement() {
-        return filteredList.next();
+        if (!hasMoreElements()) {
+            throw new NoSuchElementException();
+        }
+        Collector.MetricFamilySamples familySamples = next;
+        next = null;
+        return familySamples;
     }
 
     @Override
     public Iterator<Collector.MetricFamilySamples> asIterator() {
-        return filteredList;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return hasMoreElements();
+            }
+
+            @Override
+            public Collector.MetricFamilySamples next() {
+                return nextElement();
+            }
+        };
     }
 }
@@ -1,5 +1,8 @@
 package org.jenkinsci.plugins.prometheus.config.disabledmetrics;
 
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
 import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,8 +10,7 @@ import org.slf4j.LoggerFactory;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class MetricStatusChecker {
@@ -16,70 +18,95 @@ public class MetricStatusChecker {
     private static final Logger LOGGER = LoggerFactory.getLogger(MetricStatusChecker.class);
 
     public static boolean isEnabled(String metricName) {
-
-        List<Entry> entries = getEntries();
-
-        for (Entry entry : entries) {
-            if (entry instanceof RegexDisabledMetric) {
-                Pattern pattern = Pattern.compile(((RegexDisabledMetric) entry).getRegex());
-                Matcher matcher = pattern.matcher(metricName);
-                if (matcher.matches()) {
-                    LOGGER.debug("Metric named '{}' is disabled via Jenkins Prometheus Plugin configuration. Reason: Regex", metricName);
-                    return false;
-                }
-            }
-
-            if (entry instanceof NamedDisabledMetric) {
-                if (metricName.equalsIgnoreCase(((NamedDisabledMetric) entry).getMetricName())) {
-                    LOGGER.debug("Metric named '{}' is disabled via Jenkins Prometheus Plugin configuration. Reason: Named", metricName);
-                    return false;
-                }
-            }
-        }
-        return true;
+        CompiledMetricFilter filter = getFilter();
+        return filter == null || filter.isMetricEnabled(metricName);
     }
 
     public static boolean isJobEnabled(String jobName) {
+        CompiledMetricFilter filter = getFilter();
+        return filter == null || filter.isJobEnabled(jobName);
+    }
 
-        List<Entry> entries = getEntries();
-
-        for (Entry entry : entries) {
-            if (entry instanceof JobRegexDisabledMetric) {
-                Pattern pattern = Pattern.compile(((JobRegexDisabledMetric) entry).getRegex());
-                Matcher matcher = pattern.matcher(jobName);
-                if (matcher.matches()) {
-                    LOGGER.debug("Job named '{}' is disabled via Jenkins Prometheus Plugin configuration. Reason: JobRegexDisabledMetric", jobName);
-                    return false;
-                }
-            }
-        }
-        return true;
+    /**
+     * @return a check of metric names against the configuration at the time of the call, so checking many names looks
+     * up the configuration only once
+     */
+    public static Predicate<String> metricFilter() {
+        CompiledMetricFilter filter = getFilter();
+        return filter == null ? name -> true : filter::isMetricEnabled;
+    }
+
+    /**
+     * @return a check of job names against the configuration at the time of the call, see {@link #metricFilter()}
+     */
+    public static Predicate<String> jobFilter() {
+        CompiledMetricFilter filter = getFilter();
+        return filter == null ? name -> true : filter::isJobEnabled;
     }
 
     public static Set<String> filter(List<String> allMetricNames) {
         if (allMetricNames == null) {
             return new HashSet<>();
         }
-        return allMetricNames.stream().filter(MetricStatusChecker::isEnabled).collect(Collectors.toSet());
+        return allMetricNames.stream().filter(metricFilter()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Drops the cached inclusion decision of the job or folder with the given full name and of all items within it.
+     */
+    static void forgetJob(String fullName) {
+        PrometheusConfiguration configuration = PrometheusConfiguration.get();
+        DisabledMetricConfig disabledMetricConfig = configuration == null ? null : configuration.getDisabledMetricConfig();
+        if (disabledMetricConfig != null) {
+            disabledMetricConfig.getCompiledFilter().forgetJob(fullName);
+        }
     }
 
-    private static List<Entry> getEntries() {
+    /**
+     * @return the filter compiled from the entries of the current configuration, null if nothing is disabled
+     */
+    private static CompiledMetricFilter getFilter() {
         PrometheusConfiguration configuration = PrometheusConfiguration.get();
         if (configuration == null) {
             LOGGER.warn("Cannot check if job is enabled. No PrometheusConfiguration");
-            return List.of();
+            return null;
         }
         DisabledMetricConfig disabledMetricConfig = configuration.getDisabledMetricConfig();
         if (disabledMetricConfig == null) {
             LOGGER.debug("Cannot check if metric is enabled. No DisabledMetricConfig.");
-            return List.of();
+            return null;
         }
 
         List<Entry> entries = disabledMetricConfig.getEntries();
         if (entries == null || entries.isEmpty()) {
             LOGGER.debug("Cannot check if metric is enabled. No entries specified in DisabledMetricConfig.");
-            return List.of();
+            return null;
+        }
+        // compiled once per configuration, saving the global configuration binds a new DisabledMetricConfig
+        return disabledMetricConfig.getCompiledFilter();
+    }
+
+    /**
+     * Keeps the job inclusion index in line with the jobs: a renamed or moved job is decided again under its new name
+     * and deleted jobs do not stay in the index.
+     */
+    @Extension
+    public static class JobInclusionIndexListener extends ItemListener {
+
+        @Override
+        public void onCreated(Item item) {
+            forgetJob(item.getFullName());
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            forgetJob(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            forgetJob(oldFullName);
+            forgetJob(newFullName);
         }
-        return entries;
     }
 }
@@ -0,0 +1,132 @@
+package org.jenkinsci.plugins.prometheus.rest;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Selects metric families by the {@code name[]} and {@code match[]} query parameters of a scrape.
+ * <p>
+ * {@code name[]} takes metric names which may contain {@code *} as wildcard, {@code match[]} takes Prometheus series
+ * selectors like {@code default_jenkins_builds_total} or {@code {__name__=~"default_jenkins_executors_.*"}}. The
+ * selection works on whole families, so only the metric name of a selector is taken into account and its other label
+ * matchers are ignored. A family is selected if any of the parameters matches its name or the name of one of its samples.
+ */
+final class FamilySelector implements Predicate<String> {
+
+    // sample name suffixes a selector may use instead of the family name
+    private static final String[] SAMPLE_SUFFIXES = {"", "_total", "_created", "_count", "_sum", "_bucket", "_info"};
+
+    private static final Pattern METRIC_NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final Pattern SELECTOR = Pattern.compile("\\s*(" + METRIC_NAME.pattern() + ")?\\s*(?:\\{(.*)})?\\s*");
+    private static final Pattern LABEL_MATCHER = Pattern.compile(
+            "\\s*([a-zA-Z_][a-zA-Z0-9_]*)\\s*(=~|!~|!=|=)\\s*\"((?:[^\"\\\\]|\\\\.)*)\"\\s*(,|$)");
+
+    private final List<Predicate<String>> nameMatchers;
+
+    private FamilySelector(List<Predicate<String>> nameMatchers) {
+        this.nameMatchers = nameMatchers;
+    }
+
+    /**
+     * @param names   - values of the name[] query parameter, may be null
+     * @param matches - values of the match[] query parameter, may be null
+     * @return the selector or null if the scrape does not select any families
+     * @throws IllegalArgumentException if a series selector is malformed
+     */
+    @CheckForNull
+    static FamilySelector of(@CheckForNull String[] names, @CheckForNull String[] matches) {
+        List<Predicate<String>> nameMatchers = new ArrayList<>();
+        if (names != null) {
+            for (String name : names) {
+                nameMatchers.add(globMatcher(name.trim()));
+            }
+        }
+        if (matches != null) {
+            for (String match : matches) {
+                nameMatchers.add(selectorMatcher(match));
+            }
+        }
+        return nameMatchers.isEmpty() ? null : new FamilySelector(nameMatchers);
+    }
+
+    @Override
+    public boolean test(String familyName) {
+        for (String suffix : SAMPLE_SUFFIXES) {
+            String name = familyName + suffix;
+            for (Predicate<String> nameMatcher : nameMatchers) {
+                if (nameMatcher.test(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Predicate<String> globMatcher(String glob) {
+        if (glob.indexOf('*') < 0) {
+            return glob::equals;
+        }
+        StringBuilder regex = new StringBuilder();
+        for (String part : glob.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString()).asMatchPredicate();
+    }
+
+    private static Predicate<String> selectorMatcher(String selector) {
+        Matcher matcher = SELECTOR.matcher(selector);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid series selector: " + selector);
+        }
+        Predicate<String> nameMatcher = name -> true;
+        if (matcher.group(1) != null) {
+            nameMatcher = matcher.group(1)::equals;
+        }
+        String labelMatchers = matcher.group(2);
+        if (labelMatchers != null && !labelMatchers.isBlank()) {
+            Matcher label = LABEL_MATCHER.matcher(labelMatchers);
+            int end = 0;
+            while (end < labelMatchers.length()) {
+                if (!label.find(end) || label.start() != end) {
+                    throw new IllegalArgumentException("Invalid series selector: " + selector);
+                }
+                end = label.end();
+                if ("__name__".equals(label.group(1))) {
+                    nameMatcher = nameMatcher.and(labelValueMatcher(selector, label.group(2), unescape(label.group(3))));
+                }
+            }
+        }
+        return nameMatcher;
+    }
+
+    private static Predicate<String> labelValueMatcher(String selector, String operator, String value) {
+        switch (operator) {
+            case "=":
+                return value::equals;
+            case "!=":
+                return name -> !value.equals(name);
+            default:
+                Predicate<String> regex;
+                try {
+                    // Prometheus regular expressions are fully anchored
+                    regex = Pattern.compile(value).asMatchPredicate();
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid regular expression in series selector: " + selector, e);
+                }
+                return "=~".equals(operator) ? regex : regex.negate();
+        }
+    }
+
+    private static String unescape(String value) {
+        return value.replaceAll("\\\\(.)", "$1");
+    }
+}
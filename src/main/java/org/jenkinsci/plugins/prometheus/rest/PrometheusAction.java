@@ -3,21 +3,29 @@ package org.jenkinsci.plugins.prometheus.rest;
 import hudson.Extension;
 import hudson.model.UnprotectedRootAction;
 import hudson.util.HttpResponses;
-import io.prometheus.client.exporter.common.TextFormat;
 import jenkins.metrics.api.Metrics;
 import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.jenkinsci.plugins.prometheus.service.CollectionStatistics;
 import org.jenkinsci.plugins.prometheus.service.DefaultPrometheusMetrics;
+import org.jenkinsci.plugins.prometheus.service.ExpositionFormat;
+import org.jenkinsci.plugins.prometheus.service.MetricsSnapshot;
 import org.jenkinsci.plugins.prometheus.service.PrometheusMetrics;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
 
 import java.io.IOException;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Extension
 public class PrometheusAction implements UnprotectedRootAction {
 
+    // <additional path>/shard/<shard>/<number of shards>
+    private static final Pattern SHARD_PATH = Pattern.compile("/shard/(\\d{1,9})/(\\d{1,9})");
+
     private final PrometheusMetrics prometheusMetrics = DefaultPrometheusMetrics.get();
 
     @Override
@@ -36,15 +44,34 @@ public class PrometheusAction implements UnprotectedRootAction {
     }
 
     public HttpResponse doDynamic(StaplerRequest2 request) {
-        if (request.getRestOfPath().equals(PrometheusConfiguration.get().getAdditionalPath())) {
+        String restOfPath = request.getRestOfPath();
+        String additionalPath = PrometheusConfiguration.get().getAdditionalPath();
+        if (restOfPath.equals(additionalPath)) {
             if (hasAccess()) {
-                return prometheusResponse();
+                return prometheusResponse(prometheusMetrics::getSnapshot, request);
             }
             return HttpResponses.forbidden();
         }
+        if (restOfPath.startsWith(additionalPath)) {
+            Matcher matcher = SHARD_PATH.matcher(restOfPath.substring(additionalPath.length()));
+            if (matcher.matches()) {
+                return shardResponse(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), request);
+            }
+        }
         return HttpResponses.notFound();
     }
 
+    private HttpResponse shardResponse(int shard, int shardCount, StaplerRequest2 request) {
+        // a scraper still using an old number of shards must not silently get a different split of the jobs
+        if (shardCount < 2 || shardCount != PrometheusConfiguration.get().getJobShards() || shard >= shardCount) {
+            return HttpResponses.notFound();
+        }
+        if (hasAccess()) {
+            return prometheusResponse(() -> prometheusMetrics.getShardSnapshot(shard, shardCount), request);
+        }
+        return HttpResponses.forbidden();
+    }
+
     private boolean hasAccess() {
         if (PrometheusConfiguration.get().isUseAuthenticatedEndpoint()) {
             return Jenkins.get().hasPermission(Metrics.VIEW);
@@ -53,14 +80,147 @@ public class PrometheusAction implements UnprotectedRootAction {
     }
 
 
-    private HttpResponse prometheusResponse() {
+    /**
+     * @param acceptEncoding - value of the Accept-Encoding request header, may be null
+     * @return true if the client accepts a gzip encoded response
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcardAccepted = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                // an explicit gzip entry always wins over the wildcard
+                return !isZeroQuality(parts);
+            }
+            if ("*".equals(name)) {
+                wildcardAccepted = !isZeroQuality(parts);
+            }
+        }
+        return wildcardAccepted;
+    }
+
+    /**
+     * @param ifNoneMatch - value of the If-None-Match request header, may be null
+     * @param eTag        - entity tag of the current representation, may be null
+     * @return true if the client already has the current representation
+     */
+    static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || eTag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            // If-None-Match uses the weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String[] codingParts) {
+        for (int i = 1; i < codingParts.length; i++) {
+            String parameter = codingParts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static String varyHeader(MetricsSnapshot snapshot) {
+        if (snapshot.supports(ExpositionFormat.OPENMETRICS_100)) {
+            return snapshot.hasGzipBody() ? "Accept, Accept-Encoding" : "Accept";
+        }
+        return snapshot.hasGzipBody() ? "Accept-Encoding" : null;
+    }
+
+    private HttpResponse prometheusResponse(Supplier<MetricsSnapshot> snapshotSupplier, StaplerRequest2 request) {
+        ExpositionFormat preferredFormat = ExpositionFormat.fromAcceptHeader(request.getHeader("Accept"));
+        FamilySelector selector;
+        try {
+            selector = FamilySelector.of(request.getParameterValues("name[]"), request.getParameterValues("match[]"));
+        } catch (IllegalArgumentException e) {
+            return HttpResponses.errorWithoutStack(StaplerResponse2.SC_BAD_REQUEST, e.getMessage());
+        }
+        if (selector != null) {
+            return selectiveResponse(snapshotSupplier, preferredFormat, selector);
+        }
+        return prometheusResponse(snapshotSupplier, preferredFormat,
+                acceptsGzip(request.getHeader("Accept-Encoding")), request.getHeader("If-None-Match"));
+    }
+
+    /**
+     * Serves only the selected metric families, concatenated from their pre-rendered bytes. These responses are small,
+     * so they are neither compressed nor tagged.
+     */
+    private HttpResponse selectiveResponse(Supplier<MetricsSnapshot> snapshotSupplier, ExpositionFormat preferredFormat,
+                                           FamilySelector selector) {
         return new HttpResponse() {
             @Override
             public void generateResponse(StaplerRequest2 request, StaplerResponse2 response, Object node) throws IOException {
+                MetricsSnapshot snapshot = snapshotSupplier.get();
+                CollectionStatistics.get().recordScrape(snapshot);
+                ExpositionFormat format = snapshot.select(preferredFormat);
+                byte[] body = snapshot.selectFamilies(format, selector);
+
+                response.addHeader("Cache-Control", "must-revalidate,no-cache");
+                if (snapshot.supports(ExpositionFormat.OPENMETRICS_100)) {
+                    response.addHeader("Vary", "Accept");
+                }
+                response.setStatus(StaplerResponse2.SC_OK);
+                response.setContentType(format.getContentType());
+                response.setContentLength(body.length);
+                response.getOutputStream().write(body);
+            }
+        };
+    }
+
+    private HttpResponse prometheusResponse(Supplier<MetricsSnapshot> snapshotSupplier, ExpositionFormat preferredFormat,
+                                            boolean acceptsGzip, String ifNoneMatch) {
+        return new HttpResponse() {
+            @Override
+            public void generateResponse(StaplerRequest2 request, StaplerResponse2 response, Object node) throws IOException {
+                MetricsSnapshot snapshot = snapshotSupplier.get();
+                CollectionStatistics.get().recordScrape(snapshot);
+                ExpositionFormat format = snapshot.select(preferredFormat);
+                boolean gzip = acceptsGzip && snapshot.hasGzipBody();
+                String eTag = snapshot.getETag(format, gzip);
+
+                response.addHeader("Cache-Control", "must-revalidate,no-cache");
+                String vary = varyHeader(snapshot);
+                if (vary != null) {
+                    response.addHeader("Vary", vary);
+                }
+                if (eTag != null) {
+                    response.addHeader("ETag", eTag);
+                }
+                if (matchesETag(ifNoneMatch, eTag)) {
+                    response.setStatus(StaplerResponse2.SC_NOT_MODIFIED);
+                    return;
+                }
+
                 response.setStatus(StaplerResponse2.SC_OK);
-                response.setContentType(TextFormat.CONTENT_TYPE_004);
-                response.addHeader("Cache-Control", "must-revalidate,no-cache,no-store");
-                response.getWriter().write(prometheusMetrics.getMetrics());
+                response.setContentType(format.getContentType());
+                if (gzip) {
+                    response.addHeader("Content-Encoding", "gzip");
+                }
+                response.setContentLength(snapshot.getContentLength(format, gzip));
+                snapshot.writeTo(response.getOutputStream(), format, gzip);
             }
         };
     }
@@ -0,0 +1,198 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.SimpleCollector;
+import org.jenkinsci.plugins.prometheus.util.ConfigurationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics about the collection pipeline itself: how long every collector takes, how much it produces, whether it
+ * failed or timed out, how large the snapshots are and how old they are when they are scraped.
+ * <p>
+ * The metrics are kept without namespace, so they survive namespace changes, and prefixed when they are collected.
+ */
+public class CollectionStatistics extends Collector {
+
+    private static final CollectionStatistics INSTANCE = new CollectionStatistics();
+
+    // not kept as gauge, the value 1 is only ever rendered into snapshots restored from disk
+    private static final String SNAPSHOT_RESTORED = "snapshot_restored";
+
+    private final Histogram collectorDuration = Histogram.build()
+            .name("collector_duration_seconds")
+            .help("Time a collector took to collect and render its metrics")
+            .labelNames("collector")
+            .buckets(0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30, 60, 300)
+            .create();
+    private final Gauge collectorFamilies = Gauge.build()
+            .name("collector_families")
+            .help("Number of metric families the collector returned in its latest run")
+            .labelNames("collector")
+            .create();
+    private final Gauge collectorSeries = Gauge.build()
+            .name("collector_series")
+            .help("Number of samples the collector returned in its latest run")
+            .labelNames("collector")
+            .create();
+    private final Counter collectorTimeouts = Counter.build()
+            .name("collector_timeouts_total")
+            .help("Number of runs the collector did not finish in time")
+            .labelNames("collector")
+            .create();
+    private final Counter collectorErrors = Counter.build()
+            .name("collector_errors_total")
+            .help("Number of runs the collector failed")
+            .labelNames("collector")
+            .create();
+    private final Gauge collectorStale = Gauge.build()
+            .name("collector_stale")
+            .help("Whether the collector did not finish in time and its previous results are exposed")
+            .labelNames("collector")
+            .create();
+    private final Gauge seriesRejected = Gauge.build()
+            .name("series_rejected")
+            .help("Number of label value combinations folded into the overflow series because the metric family reached its series limit")
+            .labelNames("family")
+            .create();
+    private final Gauge snapshotSize = Gauge.build()
+            .name("snapshot_size_bytes")
+            .help("Size of the latest metrics snapshot")
+            .labelNames("format", "encoding")
+            .create();
+    private final Histogram snapshotAge = Histogram.build()
+            .name("snapshot_age_seconds")
+            .help("Age of the metrics snapshot when it was scraped")
+            .buckets(1, 5, 15, 30, 60, 120, 300, 600, 1800)
+            .create();
+    private final Gauge jobCollectorRunsVisited = Gauge.build()
+            .name("job_collector_runs_visited")
+            .help("Number of builds the job collector visited in its latest run")
+            .labelNames("shard")
+            .create();
+    private final Counter jobCollectorRunsSkipped = Counter.build()
+            .name("job_collector_runs_skipped_total")
+            .help("Number of builds the job collector did not take into account because they were not loaded")
+            .labelNames("shard")
+            .create();
+
+    private final List<SimpleCollector<?>> metrics = List.of(collectorDuration, collectorFamilies, collectorSeries,
+            collectorTimeouts, collectorErrors, collectorStale, seriesRejected, snapshotSize, snapshotAge,
+            jobCollectorRunsVisited, jobCollectorRunsSkipped);
+
+    private CollectionStatistics() {
+    }
+
+    public static CollectionStatistics get() {
+        return INSTANCE;
+    }
+
+    void recordCollectorRun(String collector, long durationNanos, List<MetricFamilySamples> familySamples) {
+        int series = 0;
+        for (MetricFamilySamples family : familySamples) {
+            series += family.samples.size();
+        }
+        collectorDuration.labels(collector).observe(durationNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        collectorFamilies.labels(collector).set(familySamples.size());
+        collectorSeries.labels(collector).set(series);
+    }
+
+    void recordCollectorTimeout(String collector) {
+        collectorTimeouts.labels(collector).inc();
+    }
+
+    void recordCollectorError(String collector) {
+        collectorErrors.labels(collector).inc();
+    }
+
+    void recordCollectorStale(String collector, boolean stale) {
+        collectorStale.labels(collector).set(stale ? 1 : 0);
+    }
+
+    /**
+     * @param series - the number of distinct label value combinations folded into the overflow series of the family
+     */
+    public void recordSeriesRejected(String family, int series) {
+        seriesRejected.labels(family).set(series);
+    }
+
+    void recordSnapshot(MetricsSnapshot snapshot) {
+        for (ExpositionFormat format : ExpositionFormat.values()) {
+            if (snapshot.supports(format)) {
+                snapshotSize.labels(format.name(), "identity").set(snapshot.getContentLength(format, false));
+                if (snapshot.hasGzipBody()) {
+                    snapshotSize.labels(format.name(), "gzip").set(snapshot.getContentLength(format, true));
+                }
+            }
+        }
+    }
+
+    public void recordScrape(MetricsSnapshot snapshot) {
+        long createdMillis = snapshot.getCreatedMillis();
+        if (createdMillis > 0) {
+            snapshotAge.observe(Math.max(0, System.currentTimeMillis() - createdMillis) / 1000.0);
+        }
+    }
+
+    /**
+     * @param shard - the shard of the jobs the job collector collects, 0 if the jobs are not sharded
+     */
+    public void recordJobCollectorRunsVisited(int shard, long runsVisited) {
+        jobCollectorRunsVisited.labels(String.valueOf(shard)).set(runsVisited);
+    }
+
+    /**
+     * @param shard - the shard of the jobs the job collector collects, 0 if the jobs are not sharded
+     */
+    public void recordJobCollectorRunsSkipped(int shard, long runsSkipped) {
+        jobCollectorRunsSkipped.labels(String.valueOf(shard)).inc(runsSkipped);
+    }
+
+    /**
+     * @return the name of the family telling whether a snapshot has been restored from disk
+     */
+    String getSnapshotRestoredFamilyName() {
+        return prefix() + SNAPSHOT_RESTORED;
+    }
+
+    /**
+     * @param restored - whether the family is rendered into a snapshot restored from disk
+     */
+    MetricFamilySamples snapshotRestored(boolean restored) {
+        return new GaugeMetricFamily(getSnapshotRestoredFamilyName(),
+                "Whether the metrics have been restored from disk after a restart and are stale until the first collection finishes",
+                restored ? 1 : 0);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        String prefix = prefix();
+        List<MetricFamilySamples> familySamples = new ArrayList<>();
+        for (SimpleCollector<?> metric : metrics) {
+            for (MetricFamilySamples family : metric.collect()) {
+                familySamples.add(withPrefix(prefix, family));
+            }
+        }
+        familySamples.add(snapshotRestored(false));
+        return familySamples;
+    }
+
+    private static String prefix() {
+        return ConfigurationUtils.getNamespace() + "_" + ConfigurationUtils.getSubSystem() + "_";
+    }
+
+    private static MetricFamilySamples withPrefix(String prefix, MetricFamilySamples family) {
+        List<MetricFamilySamples.Sample> samples = new ArrayList<>(family.samples.size());
+        for (MetricFamilySamples.Sample sample : family.samples) {
+            samples.add(new MetricFamilySamples.Sample(prefix + sample.name, sample.labelNames, sample.labelValues,
+                    sample.value, sample.exemplar, sample.timestampMs));
+        }
+        return new MetricFamilySamples(prefix + family.name, family.unit, family.type, family.help, samples);
+    }
+}
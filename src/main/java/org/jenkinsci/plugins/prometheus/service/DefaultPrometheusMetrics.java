@@ -5,44 +5,98 @@ import hudson.ExtensionList;
 import hudson.init.InitMilestone;
 import hudson.init.Initializer;
 import hudson.triggers.SafeTimerTask;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import io.prometheus.client.Collector;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.dropwizard.DropwizardExports;
-import io.prometheus.client.exporter.common.TextFormat;
 import io.prometheus.client.hotspot.DefaultExports;
 import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import jenkins.util.Timer;
 import org.jenkinsci.plugins.prometheus.CodeCoverageCollector;
 import org.jenkinsci.plugins.prometheus.DiskUsageCollector;
 import org.jenkinsci.plugins.prometheus.ExecutorCollector;
 import org.jenkinsci.plugins.prometheus.JenkinsStatusCollector;
 import org.jenkinsci.plugins.prometheus.JobCollector;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
 import org.jenkinsci.plugins.prometheus.config.disabledmetrics.FilteredMetricEnumeration;
 import org.jenkinsci.plugins.prometheus.util.JenkinsNodeBuildsSampleBuilder;
+import org.jenkinsci.plugins.prometheus.util.Jobs;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToLongFunction;
 
 public class DefaultPrometheusMetrics implements PrometheusMetrics {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultPrometheusMetrics.class);
 
+    private static final int COLLECTOR_THREADS = SystemProperties.getInteger(
+            DefaultPrometheusMetrics.class.getName() + ".collectorThreads", 4);
+
+    // kept in JENKINS_HOME if the metrics are persisted across restarts
+    private static final String SNAPSHOT_FILE = "prometheus-metrics-snapshot.gz";
+
     private static DefaultPrometheusMetrics INSTANCE = null;
 
+    // holds the collectors other plugins register directly, they are collected together as one more scheduled collector
     private final CollectorRegistry collectorRegistry;
-    private final AtomicReference<String> cachedMetrics;
+    // validates the metric names of the scheduled collectors without exposing them a second time through the registry
+    private final CollectorRegistry scheduledRegistry = new CollectorRegistry();
+    private final AtomicReference<MetricsSnapshot> cachedMetrics;
+    // distinguishes snapshot versions of different Jenkins runs, the generation counter restarts on every boot
+    private final String instanceId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong generation = new AtomicLong();
+    private final List<ScheduledCollector> scheduledCollectors = new CopyOnWriteArrayList<>();
+    // the job collectors of the configured shards, empty as long as the job metrics are not sharded
+    private List<ScheduledCollector> shardCollectors = List.of();
+    // the jobs of every shard, split once per collection for all shard collectors
+    private Jobs.Partition shardPartition;
+    private final AtomicReference<List<MetricsSnapshot>> shardSnapshots = new AtomicReference<>(List.of());
+    // the chunks of the collectors and the shards the current snapshots have been built from, only used by collections
+    private List<Map<ExpositionFormat, RenderedChunk>> snapshotChunks = List.of();
+    private List<Map<ExpositionFormat, RenderedChunk>> shardSnapshotChunks = List.of();
+    private boolean snapshotCompressed;
+    private final ExecutorService executor = Executors.newFixedThreadPool(COLLECTOR_THREADS,
+            new NamingThreadFactory(new DaemonThreadFactory(), "Prometheus collector"));
+    // runs the collections started by scrapes, so a scrape giving up waiting does not abort them
+    private final ExecutorService onDemandExecutor = Executors.newSingleThreadExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Prometheus on-demand collection"));
+    private final Object collectionLock = new Object();
+    // the collection currently running, shared by the periodic worker and all waiting scrapes
+    private CompletableFuture<Void> inFlight = null;
+    private volatile boolean collectorsRegistered = false;
+    // writes the snapshots to disk off the collection and request threads, only the latest pending one is written
+    private final ExecutorService persistenceExecutor = Executors.newSingleThreadExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Prometheus snapshot persistence"));
+    private final AtomicReference<MetricsSnapshot> pendingSnapshot = new AtomicReference<>();
 
     private DefaultPrometheusMetrics() {
         CollectorRegistry collectorRegistry = CollectorRegistry.defaultRegistry;
         DefaultExports.initialize();
         this.collectorRegistry = collectorRegistry;
-        this.cachedMetrics = new AtomicReference<>("");
+        this.cachedMetrics = new AtomicReference<>(MetricsSnapshot.EMPTY);
     }
 
     public static synchronized DefaultPrometheusMetrics get() {
@@ -55,12 +109,19 @@ public class DefaultPrometheusMetrics implements PrometheusMetrics {
     @Restricted(NoExternalUse.class)
     private void initRegistry() {
         this.collectorRegistry.clear();
-        DefaultExports.register(this.collectorRegistry);
+        this.scheduledRegistry.clear();
+        this.scheduledCollectors.clear();
+        registerCollector("DefaultExports", new DefaultExportsCollector());
     }
 
     @Restricted(NoExternalUse.class)
     private void registerCollector(@NonNull Collector collector) {
-        collectorRegistry.register(collector);
+        registerCollector(collector.getClass().getSimpleName(), collector);
+    }
+
+    private void registerCollector(String name, Collector collector) {
+        scheduledRegistry.register(collector);
+        scheduledCollectors.add(new ScheduledCollector(name, collector));
         logger.debug(String.format("Collector %s registered", collector.getClass().getName()));
     }
 
@@ -74,6 +135,7 @@ public class DefaultPrometheusMetrics implements PrometheusMetrics {
                     public void doRun() throws Exception {
                         logger.debug("Initializing Collectors");
                         DefaultPrometheusMetrics instance = get();
+                        instance.restoreSnapshot();
                         instance.initRegistry();
                         instance.registerCollector(new JenkinsStatusCollector());
                         instance.registerCollector(new DropwizardExports(Metrics.metricRegistry(), new JenkinsNodeBuildsSampleBuilder()));
@@ -83,6 +145,9 @@ public class DefaultPrometheusMetrics implements PrometheusMetrics {
                         instance.registerCollector(new CodeCoverageCollector());
                         // other collectors from other plugins
                         ExtensionList.lookup(Collector.class).forEach(instance::registerCollector);
+                        // collectors other plugins register in the default registry at any time
+                        instance.registerCollector("CollectorRegistry", new RegistryCollector(instance.collectorRegistry));
+                        instance.collectorsRegistered = true;
                         logger.debug("Finished initializing Collectors");
                     }
                 },
@@ -92,16 +157,310 @@ public class DefaultPrometheusMetrics implements PrometheusMetrics {
 
     @Override
     public String getMetrics() {
-        return cachedMetrics.get();
+        return cachedMetrics.get().asText();
     }
 
+    @Override
+    public MetricsSnapshot getSnapshot() {
+        MetricsSnapshot snapshot = cachedMetrics.get();
+        if (awaitCollectionIfOutdated(snapshot)) {
+            snapshot = cachedMetrics.get();
+        }
+        return snapshot;
+    }
+
+    @Override
+    public MetricsSnapshot getShardSnapshot(int shard, int shardCount) {
+        MetricsSnapshot snapshot = lookupShardSnapshot(shard, shardCount);
+        if (awaitCollectionIfOutdated(snapshot)) {
+            snapshot = lookupShardSnapshot(shard, shardCount);
+        }
+        return snapshot;
+    }
+
+    private MetricsSnapshot lookupShardSnapshot(int shard, int shardCount) {
+        List<MetricsSnapshot> snapshots = shardSnapshots.get();
+        if (snapshots.size() != shardCount || shard < 0 || shard >= shardCount) {
+            return MetricsSnapshot.EMPTY;
+        }
+        return snapshots.get(shard);
+    }
+
+    /**
+     * Runs the collection itself unless a scrape started one which is still running. In that case it waits for the
+     * running collection instead, so the periodic worker never collects in parallel to it.
+     */
     @Override
     public void collectMetrics() {
-        try (StringWriter buffer = new StringWriter()) {
-            TextFormat.write004(buffer, new FilteredMetricEnumeration(collectorRegistry.metricFamilySamples().asIterator()));
-            cachedMetrics.set(buffer.toString());
+        try {
+            startCollection(Runnable::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Interrupted while waiting for the running collection");
+        } catch (ExecutionException e) {
+            logger.debug("Unable to collect metrics", e.getCause());
+        }
+    }
+
+    /**
+     * If collecting on scrape is enabled and the given snapshot is missing or too old, waits for a collection up to
+     * the configured timeout. Concurrent scrapes wait for the same collection.
+     *
+     * @return whether a collection has been waited for
+     */
+    private boolean awaitCollectionIfOutdated(MetricsSnapshot snapshot) {
+        PrometheusConfiguration configuration = PrometheusConfiguration.get();
+        if (configuration == null || !configuration.isCollectOnScrape() || !collectorsRegistered
+                || !isOutdated(snapshot, configuration.getMaxSnapshotAgeInSeconds())) {
+            return false;
+        }
+        try {
+            startCollection(onDemandExecutor).get(configuration.getScrapeCollectionTimeoutInSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("Collection did not finish within {} seconds, serving the previous metrics",
+                    configuration.getScrapeCollectionTimeoutInSeconds());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Interrupted while waiting for the collection");
+        } catch (ExecutionException e) {
+            logger.debug("Unable to collect metrics", e.getCause());
+        }
+        return true;
+    }
+
+    private static boolean isOutdated(MetricsSnapshot snapshot, long maxAgeInSeconds) {
+        long createdMillis = snapshot.getCreatedMillis();
+        if (createdMillis == 0) {
+            return true;
+        }
+        return maxAgeInSeconds > 0 && System.currentTimeMillis() - createdMillis > TimeUnit.SECONDS.toMillis(maxAgeInSeconds);
+    }
+
+    /**
+     * @return the running collection or a new one started on the given executor
+     */
+    private CompletableFuture<Void> startCollection(Executor collectionExecutor) {
+        CompletableFuture<Void> collection;
+        synchronized (collectionLock) {
+            if (inFlight != null) {
+                return inFlight;
+            }
+            collection = new CompletableFuture<>();
+            inFlight = collection;
+        }
+        collectionExecutor.execute(() -> {
+            try {
+                doCollectMetrics();
+            } catch (RuntimeException e) {
+                collection.completeExceptionally(e);
+            } finally {
+                synchronized (collectionLock) {
+                    inFlight = null;
+                }
+                // no-op if completed exceptionally above
+                collection.complete(null);
+            }
+        });
+        return collection;
+    }
+
+    private void doCollectMetrics() {
+        PrometheusConfiguration configuration = PrometheusConfiguration.get();
+        if (configuration == null) {
+            logger.debug("Unable to collect metrics. No PrometheusConfiguration");
+            return;
+        }
+        Set<ExpositionFormat> formats = configuration.isRenderOpenMetrics()
+                ? EnumSet.allOf(ExpositionFormat.class)
+                : EnumSet.of(ExpositionFormat.TEXT_004);
+        List<ScheduledCollector> shards = getShardCollectors(configuration.getJobShards());
+        List<ScheduledCollector> collectors = new ArrayList<>();
+        for (ScheduledCollector collector : scheduledCollectors) {
+            // the job metrics are provided by the shards instead
+            if (shards.isEmpty() || !(collector.getCollector() instanceof JobCollector)) {
+                collectors.add(collector);
+            }
+        }
+        Executor collectorExecutor = configuration.isCollectInParallel() ? executor : Runnable::run;
+        long timeoutInSeconds = configuration.getCollectorTimeoutInSeconds();
+        long periodInSeconds = configuration.getCollectingMetricsPeriodInSeconds();
+        Map<String, Long> intervals = configuration.getCollectorIntervalsInSeconds();
+        try {
+            submitDue(collectors, formats, collectorExecutor,
+                    collector -> intervals.getOrDefault(collector.getName(), periodInSeconds));
+            // the shards share the refresh interval configured for the job collector
+            long jobInterval = intervals.getOrDefault(JobCollector.class.getSimpleName(), periodInSeconds);
+            submitDue(shards, formats, collectorExecutor, collector -> jobInterval);
+
+            List<Map<ExpositionFormat, RenderedChunk>> chunks = new ArrayList<>(collectors.size());
+            for (ScheduledCollector collector : collectors) {
+                chunks.add(collector.await(timeoutInSeconds, TimeUnit.SECONDS));
+            }
+            boolean compress = configuration.isCompressMetrics();
+            boolean compressChanged = compress != snapshotCompressed;
+            // the worker ticks at the shortest collector interval, a snapshot is only built again if a collector
+            // returned new chunks, so its version and with it the entity tag stay the same until something changed.
+            // The collection statistics alone do not make a new snapshot, they are updated with the next one.
+            if (!compressChanged && sameChunks(chunks, snapshotChunks)) {
+                cachedMetrics.set(cachedMetrics.get().refreshed());
+            } else {
+                List<Map<ExpositionFormat, RenderedChunk>> snapshotAndStatisticsChunks = new ArrayList<>(chunks);
+                snapshotAndStatisticsChunks.add(ExpositionRenderer.render(formats, new FilteredMetricEnumeration(CollectionStatistics.get().collect().iterator())));
+                String version = instanceId + "-" + generation.incrementAndGet();
+                MetricsSnapshot snapshot = MetricsSnapshot.fromChunks(ExpositionRenderer.join(formats, snapshotAndStatisticsChunks), compress, version);
+                cachedMetrics.set(snapshot);
+                snapshotChunks = chunks;
+                CollectionStatistics.get().recordSnapshot(snapshot);
+                if (configuration.isPersistMetrics()) {
+                    persist(snapshot);
+                }
+            }
+
+            List<MetricsSnapshot> previousSnapshots = shardSnapshots.get();
+            List<Map<ExpositionFormat, RenderedChunk>> shardChunks = new ArrayList<>(shards.size());
+            List<MetricsSnapshot> snapshots = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                Map<ExpositionFormat, RenderedChunk> chunk = shards.get(i).await(timeoutInSeconds, TimeUnit.SECONDS);
+                shardChunks.add(chunk);
+                if (!compressChanged && previousSnapshots.size() == shards.size() && shardSnapshotChunks.size() == shards.size()
+                        && shardSnapshotChunks.get(i) == chunk) {
+                    snapshots.add(previousSnapshots.get(i).refreshed());
+                } else {
+                    String version = instanceId + "-" + generation.incrementAndGet() + "-shard-" + i;
+                    snapshots.add(MetricsSnapshot.fromChunks(ExpositionRenderer.join(formats, List.of(chunk)), compress, version));
+                }
+            }
+            shardSnapshotChunks = shardChunks;
+            shardSnapshots.set(snapshots);
+            snapshotCompressed = compress;
         } catch (IOException e) {
             logger.debug("Unable to collect metrics");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Interrupted while collecting metrics");
+        }
+    }
+
+    /**
+     * @return whether the given chunks are the ones returned before, which the collectors keep until they run again
+     */
+    private static boolean sameChunks(List<Map<ExpositionFormat, RenderedChunk>> chunks,
+                                      List<Map<ExpositionFormat, RenderedChunk>> previousChunks) {
+        if (chunks.size() != previousChunks.size()) {
+            return false;
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            if (chunks.get(i) != previousChunks.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serves the snapshot persisted by the previous Jenkins run until the first collection finishes. The restored
+     * snapshot keeps its creation time and is marked by the snapshot_restored gauge.
+     */
+    private void restoreSnapshot() {
+        PrometheusConfiguration configuration = PrometheusConfiguration.get();
+        if (configuration == null || !configuration.isPersistMetrics()) {
+            return;
+        }
+        MetricsSnapshot restored = snapshotStore().load(List.of(CollectionStatistics.get().snapshotRestored(true)),
+                configuration.isCompressMetrics());
+        if (restored != null && cachedMetrics.compareAndSet(MetricsSnapshot.EMPTY, restored)) {
+            logger.info("Serving the metrics of the previous run until the first collection finishes");
+        }
+    }
+
+    private void persist(MetricsSnapshot snapshot) {
+        // a write already scheduled picks up the latest snapshot
+        if (pendingSnapshot.getAndSet(snapshot) == null) {
+            persistenceExecutor.execute(() -> {
+                MetricsSnapshot latest = pendingSnapshot.getAndSet(null);
+                String restoredFamily = CollectionStatistics.get().getSnapshotRestoredFamilyName();
+                try {
+                    snapshotStore().save(latest, family -> !family.equals(restoredFamily));
+                } catch (IOException e) {
+                    logger.warn("Unable to persist the metrics snapshot", e);
+                }
+            });
+        }
+    }
+
+    private static SnapshotStore snapshotStore() {
+        return new SnapshotStore(Jenkins.get().getRootDir().toPath().resolve(SNAPSHOT_FILE));
+    }
+
+    /**
+     * Starts every given collector which is due on the given executor. Their results are picked up by
+     * {@link ScheduledCollector#await(long, TimeUnit)}, a collector not finishing within the timeout contributes its
+     * previous results and is reported by the collector_stale gauge.
+     *
+     * @param intervals - refresh interval in seconds of each collector
+     */
+    private void submitDue(List<ScheduledCollector> collectors, Set<ExpositionFormat> formats, Executor executor,
+                           ToLongFunction<ScheduledCollector> intervals) {
+        for (ScheduledCollector collector : collectors) {
+            if (collector.submit(executor, formats, intervals.applyAsLong(collector), TimeUnit.SECONDS)) {
+                logger.debug("Collector {} refreshed", collector.getName());
+            }
+        }
+    }
+
+    /**
+     * @return one job collector per shard, an empty list if the job metrics are not sharded. The shards of a
+     * collection share one split of the jobs.
+     */
+    private synchronized List<ScheduledCollector> getShardCollectors(int shardCount) {
+        if (shardCount <= 1) {
+            shardCollectors = List.of();
+            shardPartition = null;
+            shardSnapshots.set(List.of());
+        } else if (shardCollectors.size() != shardCount) {
+            shardPartition = new Jobs.Partition(shardCount);
+            List<ScheduledCollector> shards = new ArrayList<>(shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                shards.add(new ScheduledCollector("JobCollector-shard-" + i, new JobCollector(i, shardPartition)));
+            }
+            shardCollectors = List.copyOf(shards);
+        } else {
+            shardPartition.invalidate();
+        }
+        return shardCollectors;
+    }
+
+    /**
+     * Exposes the collectors registered in a registry as one collector, so they are scheduled together.
+     */
+    private static final class RegistryCollector extends Collector {
+
+        private final CollectorRegistry registry;
+
+        private RegistryCollector(CollectorRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            return Collections.list(registry.metricFamilySamples());
+        }
+    }
+
+    /**
+     * Exposes the JVM collectors of {@link DefaultExports} as one collector, so they are scheduled together.
+     */
+    private static final class DefaultExportsCollector extends Collector {
+
+        private final CollectorRegistry registry = new CollectorRegistry(true);
+
+        private DefaultExportsCollector() {
+            DefaultExports.register(registry);
+        }
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            return Collections.list(registry.metricFamilySamples());
         }
     }
 }
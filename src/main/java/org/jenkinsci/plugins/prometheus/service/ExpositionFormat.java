@@ -0,0 +1,71 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.exporter.common.TextFormat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+
+/**
+ * The exposition formats a {@link MetricsSnapshot} can be rendered in.
+ */
+public enum ExpositionFormat {
+
+    TEXT_004(TextFormat.CONTENT_TYPE_004, ""),
+    OPENMETRICS_100(TextFormat.CONTENT_TYPE_OPENMETRICS_100, "-om");
+
+    private static final String OPENMETRICS_EOF = "# EOF\n";
+
+    private final String contentType;
+    private final String eTagSuffix;
+
+    ExpositionFormat(String contentType, String eTagSuffix) {
+        this.contentType = contentType;
+        this.eTagSuffix = eTagSuffix;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    String getETagSuffix() {
+        return eTagSuffix;
+    }
+
+    /**
+     * @param acceptHeader - value of the Accept request header, may be null
+     * @return the format preferred by the client
+     */
+    public static ExpositionFormat fromAcceptHeader(String acceptHeader) {
+        if (TextFormat.CONTENT_TYPE_OPENMETRICS_100.equals(TextFormat.chooseContentType(acceptHeader))) {
+            return OPENMETRICS_100;
+        }
+        return TEXT_004;
+    }
+
+    /**
+     * Writes a single metric family. Calling this for every family and {@link #finish(Writer)} at the end
+     * produces a complete exposition.
+     *
+     * @param scratch - buffer which may be reused between calls to avoid allocations
+     */
+    void writeFamily(Writer writer, Collector.MetricFamilySamples familySamples, StringWriter scratch) throws IOException {
+        if (this == TEXT_004) {
+            TextFormat.write004(writer, Collections.enumeration(Collections.singletonList(familySamples)));
+            return;
+        }
+        // the OpenMetrics writer always terminates its output, so the family is rendered aside and the EOF marker dropped
+        scratch.getBuffer().setLength(0);
+        TextFormat.writeOpenMetrics100(scratch, Collections.enumeration(Collections.singletonList(familySamples)));
+        StringBuffer rendered = scratch.getBuffer();
+        writer.append(rendered, 0, rendered.length() - OPENMETRICS_EOF.length());
+    }
+
+    void finish(Writer writer) throws IOException {
+        if (this == OPENMETRICS_100) {
+            writer.write(OPENMETRICS_EOF);
+        }
+    }
+}
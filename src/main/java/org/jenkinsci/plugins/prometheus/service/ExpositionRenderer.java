@@ -0,0 +1,116 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Collector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders metric families into UTF-8 encoded chunks, one per {@link ExpositionFormat}, and joins chunks into
+ * complete expositions. Every chunk keeps the byte range of each family, so single families can be served later on
+ * without rendering them again.
+ */
+final class ExpositionRenderer {
+
+    private ExpositionRenderer() {
+        // prevents creating new instances
+    }
+
+    /**
+     * Renders all requested formats in a single pass over the given metric families. The chunks are not terminated,
+     * see {@link #join(Set, Collection)}.
+     */
+    static Map<ExpositionFormat, RenderedChunk> render(Set<ExpositionFormat> formats,
+                                                       Enumeration<Collector.MetricFamilySamples> familySamples) throws IOException {
+        Map<ExpositionFormat, ByteArrayOutputStream> buffers = new EnumMap<>(ExpositionFormat.class);
+        Map<ExpositionFormat, Writer> writers = new EnumMap<>(ExpositionFormat.class);
+        Map<ExpositionFormat, List<Integer>> offsets = new EnumMap<>(ExpositionFormat.class);
+        for (ExpositionFormat format : formats) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            buffers.put(format, buffer);
+            writers.put(format, new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+            offsets.put(format, new ArrayList<>(List.of(0)));
+        }
+        List<String> familyNames = new ArrayList<>();
+        StringWriter scratch = new StringWriter();
+        while (familySamples.hasMoreElements()) {
+            Collector.MetricFamilySamples family = familySamples.nextElement();
+            familyNames.add(family.name);
+            for (Map.Entry<ExpositionFormat, Writer> entry : writers.entrySet()) {
+                Writer writer = entry.getValue();
+                entry.getKey().writeFamily(writer, family, scratch);
+                // the writer has to hand its characters over to the buffer before the end offset can be taken
+                writer.flush();
+                offsets.get(entry.getKey()).add(buffers.get(entry.getKey()).size());
+            }
+        }
+        Map<ExpositionFormat, RenderedChunk> chunks = new EnumMap<>(ExpositionFormat.class);
+        for (Map.Entry<ExpositionFormat, Writer> entry : writers.entrySet()) {
+            entry.getValue().close();
+            ExpositionFormat format = entry.getKey();
+            chunks.put(format, new RenderedChunk(buffers.get(format).toByteArray(), List.copyOf(familyNames),
+                    toArray(offsets.get(format))));
+        }
+        return chunks;
+    }
+
+    /**
+     * Concatenates the chunks of every requested format and terminates the result. Chunks missing a format are skipped
+     * for that format.
+     */
+    static Map<ExpositionFormat, RenderedChunk> join(Set<ExpositionFormat> formats,
+                                                     Collection<Map<ExpositionFormat, RenderedChunk>> chunks) throws IOException {
+        Map<ExpositionFormat, RenderedChunk> joined = new EnumMap<>(ExpositionFormat.class);
+        for (ExpositionFormat format : formats) {
+            int size = 0;
+            int familyCount = 0;
+            for (Map<ExpositionFormat, RenderedChunk> chunk : chunks) {
+                RenderedChunk rendered = chunk.get(format);
+                if (rendered != null) {
+                    size += rendered.getBytes().length;
+                    familyCount += rendered.getFamilyNames().size();
+                }
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(size + 16);
+            List<String> familyNames = new ArrayList<>(familyCount);
+            int[] familyOffsets = new int[familyCount + 1];
+            int family = 0;
+            for (Map<ExpositionFormat, RenderedChunk> chunk : chunks) {
+                RenderedChunk rendered = chunk.get(format);
+                if (rendered != null) {
+                    int base = buffer.size();
+                    for (int i = 0; i < rendered.getFamilyNames().size(); i++) {
+                        familyNames.add(rendered.getFamilyNames().get(i));
+                        familyOffsets[family++] = base + rendered.getFamilyStart(i);
+                    }
+                    buffer.write(rendered.getBytes());
+                }
+            }
+            familyOffsets[familyCount] = buffer.size();
+            try (Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+                format.finish(writer);
+            }
+            joined.put(format, new RenderedChunk(buffer.toByteArray(), familyNames, familyOffsets));
+        }
+        return joined;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,207 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Immutable result of one metrics collection cycle. The exposition is rendered and encoded to UTF-8 once per
+ * {@link ExpositionFormat} when the snapshot is created, so serving it to a scraper is a plain byte copy.
+ * Optionally a gzip compressed copy of every format is kept next to it for clients sending {@code Accept-Encoding: gzip}.
+ * Each snapshot created by a collection cycle carries a version which is used as HTTP entity tag, and knows the byte
+ * range of every metric family, so scrapes of a few families are served from the same pre-rendered bytes.
+ */
+public final class MetricsSnapshot {
+
+    public static final MetricsSnapshot EMPTY = new MetricsSnapshot(new byte[0]);
+
+    private final Map<ExpositionFormat, Body> bodies;
+    @CheckForNull
+    private final String version;
+    private final long createdMillis;
+
+    /**
+     * @param body - the UTF-8 encoded text exposition. The array is taken over as is and must not be modified afterwards.
+     */
+    public MetricsSnapshot(byte[] body) {
+        this(Map.of(ExpositionFormat.TEXT_004, new Body(RenderedChunk.unindexed(body), null)), null, 0L);
+    }
+
+    private MetricsSnapshot(Map<ExpositionFormat, Body> bodies, @CheckForNull String version, long createdMillis) {
+        this.bodies = bodies;
+        this.version = version;
+        this.createdMillis = createdMillis;
+    }
+
+    /**
+     * Creates a snapshot of the given text exposition and compresses it once if requested.
+     */
+    public static MetricsSnapshot of(byte[] body, boolean compress) throws IOException {
+        return of(body, compress, null);
+    }
+
+    /**
+     * Creates a versioned snapshot of the given text exposition and compresses it once if requested.
+     */
+    public static MetricsSnapshot of(byte[] body, boolean compress, @CheckForNull String version) throws IOException {
+        return of(Map.of(ExpositionFormat.TEXT_004, body), compress, version);
+    }
+
+    /**
+     * Creates a versioned snapshot of the given expositions and compresses them once if requested.
+     *
+     * @param bodies - the UTF-8 encoded exposition per format, has to contain {@link ExpositionFormat#TEXT_004}.
+     *               The arrays are taken over as is and must not be modified afterwards.
+     */
+    public static MetricsSnapshot of(Map<ExpositionFormat, byte[]> bodies, boolean compress, @CheckForNull String version) throws IOException {
+        Map<ExpositionFormat, RenderedChunk> chunks = new EnumMap<>(ExpositionFormat.class);
+        for (Map.Entry<ExpositionFormat, byte[]> entry : bodies.entrySet()) {
+            chunks.put(entry.getKey(), RenderedChunk.unindexed(entry.getValue()));
+        }
+        return fromChunks(chunks, compress, version);
+    }
+
+    /**
+     * Creates a versioned snapshot of the given complete expositions, keeping their family index.
+     */
+    static MetricsSnapshot fromChunks(Map<ExpositionFormat, RenderedChunk> bodies, boolean compress, @CheckForNull String version) throws IOException {
+        return fromChunks(bodies, compress, version, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a snapshot which has been created at the given time, like one restored from disk.
+     */
+    static MetricsSnapshot fromChunks(Map<ExpositionFormat, RenderedChunk> bodies, boolean compress,
+                                      @CheckForNull String version, long createdMillis) throws IOException {
+        if (!bodies.containsKey(ExpositionFormat.TEXT_004)) {
+            throw new IllegalArgumentException("A snapshot always has to contain the text format");
+        }
+        Map<ExpositionFormat, Body> encoded = new EnumMap<>(ExpositionFormat.class);
+        for (Map.Entry<ExpositionFormat, RenderedChunk> entry : bodies.entrySet()) {
+            RenderedChunk body = entry.getValue();
+            encoded.put(entry.getKey(), new Body(body, compress ? gzip(body.getBytes()) : null));
+        }
+        return new MetricsSnapshot(encoded, version, createdMillis);
+    }
+
+    /**
+     * @return this snapshot created now, sharing its bodies and its version, for a collection which found nothing new
+     */
+    MetricsSnapshot refreshed() {
+        return new MetricsSnapshot(bodies, version, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the given format if this snapshot has been rendered in it, otherwise the text format
+     */
+    public ExpositionFormat select(ExpositionFormat preferred) {
+        return bodies.containsKey(preferred) ? preferred : ExpositionFormat.TEXT_004;
+    }
+
+    public boolean supports(ExpositionFormat format) {
+        return bodies.containsKey(format);
+    }
+
+    public boolean hasGzipBody() {
+        return body(ExpositionFormat.TEXT_004).gzip != null;
+    }
+
+    public int getContentLength(ExpositionFormat format, boolean gzip) {
+        return body(format).get(gzip).length;
+    }
+
+    public void writeTo(OutputStream outputStream, ExpositionFormat format, boolean gzip) throws IOException {
+        outputStream.write(body(format).get(gzip));
+    }
+
+    /**
+     * Concatenates the pre-rendered families accepted by the filter into a complete exposition. Snapshots created from
+     * plain bytes have no family index and always return an empty exposition.
+     *
+     * @param familyFilter - tested with the name of every metric family
+     * @return the uncompressed exposition of the selected families
+     */
+    public byte[] selectFamilies(ExpositionFormat format, Predicate<String> familyFilter) {
+        return body(format).plain.select(familyFilter);
+    }
+
+    /**
+     * @param format - the format of the requested representation
+     * @param gzip   - whether the entity tag is requested for the gzip compressed representation
+     * @return the quoted entity tag of the requested representation or null if this snapshot is not versioned
+     */
+    @CheckForNull
+    public String getETag(ExpositionFormat format, boolean gzip) {
+        if (version == null) {
+            return null;
+        }
+        return '"' + version + format.getETagSuffix() + (gzip ? "-gzip" : "") + '"';
+    }
+
+    @CheckForNull
+    String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the uncompressed exposition of the given format with its family index
+     */
+    RenderedChunk getChunk(ExpositionFormat format) {
+        return body(format).plain;
+    }
+
+    /**
+     * @return the time the snapshot was created at in milliseconds since the epoch, 0 if unknown
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public String asText() {
+        return new String(body(ExpositionFormat.TEXT_004).plain.getBytes(), StandardCharsets.UTF_8);
+    }
+
+    private Body body(ExpositionFormat format) {
+        Body body = bodies.get(format);
+        if (body == null) {
+            throw new IllegalArgumentException("Snapshot has not been rendered in format " + format);
+        }
+        return body;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, body.length / 8));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, 8192)) {
+            gzip.write(body);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static final class Body {
+        private final RenderedChunk plain;
+        @CheckForNull
+        private final byte[] gzip;
+
+        private Body(RenderedChunk plain, @CheckForNull byte[] gzip) {
+            this.plain = plain;
+            this.gzip = gzip;
+        }
+
+        private byte[] get(boolean compressed) {
+            if (!compressed) {
+                return plain.getBytes();
+            }
+            if (gzip == null) {
+                throw new IllegalStateException("Snapshot has no gzip compressed body");
+            }
+            return gzip;
+        }
+    }
+}
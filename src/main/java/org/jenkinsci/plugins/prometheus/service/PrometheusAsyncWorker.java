@@ -23,8 +23,11 @@ public class PrometheusAsyncWorker extends AsyncPeriodicWork {
 
     @Override
     public long getRecurrencePeriod() {
-        long collectingMetricsPeriodInMillis =
-                TimeUnit.SECONDS.toMillis(PrometheusConfiguration.get().getCollectingMetricsPeriodInSeconds());
+        PrometheusConfiguration configuration = PrometheusConfiguration.get();
+        // collectors with a shorter refresh interval than the collecting metrics period need a more frequent tick
+        long periodInSeconds = configuration.getCollectorIntervalsInSeconds().values().stream()
+                .reduce(configuration.getCollectingMetricsPeriodInSeconds(), Math::min);
+        long collectingMetricsPeriodInMillis = TimeUnit.SECONDS.toMillis(periodInSeconds);
         logger.debug("Setting recurrence period to {} in milliseconds", collectingMetricsPeriodInMillis);
         return collectingMetricsPeriodInMillis;
     }
@@ -4,6 +4,17 @@ public interface PrometheusMetrics {
 
     String getMetrics();
 
+    /**
+     * @return the metrics of the last collection. If collecting on scrape is enabled, waits for a collection first
+     * when they are missing or outdated.
+     */
+    MetricsSnapshot getSnapshot();
+
+    /**
+     * @return the job metrics of the given shard, an empty snapshot if the shard has not been collected yet
+     */
+    MetricsSnapshot getShardSnapshot(int shard, int shardCount);
+
     void collectMetrics();
 
 }
@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * UTF-8 encoded exposition of a sequence of metric families in one format, together with the byte range every family
+ * occupies. Bytes following the last family, like the OpenMetrics EOF marker, belong to no family.
+ */
+final class RenderedChunk {
+
+    static final RenderedChunk EMPTY = new RenderedChunk(new byte[0], List.of(), new int[]{0});
+
+    private final byte[] bytes;
+    private final List<String> familyNames;
+    // familyOffsets[i] is the start of family i, familyOffsets[familyNames.size()] the end of the last family
+    private final int[] familyOffsets;
+
+    /**
+     * @param bytes         - taken over as is, must not be modified afterwards
+     * @param familyOffsets - start offset of every family followed by the end offset of the last family
+     */
+    RenderedChunk(byte[] bytes, List<String> familyNames, int[] familyOffsets) {
+        if (familyOffsets.length != familyNames.size() + 1) {
+            throw new IllegalArgumentException("Expected " + (familyNames.size() + 1) + " offsets but got " + familyOffsets.length);
+        }
+        this.bytes = bytes;
+        this.familyNames = familyNames;
+        this.familyOffsets = familyOffsets;
+    }
+
+    /**
+     * @return a chunk without family index, a selection on it is always empty
+     */
+    static RenderedChunk unindexed(byte[] bytes) {
+        return new RenderedChunk(bytes, List.of(), new int[]{bytes.length});
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    List<String> getFamilyNames() {
+        return familyNames;
+    }
+
+    int getFamilyStart(int family) {
+        return familyOffsets[family];
+    }
+
+    int getFamilyEnd(int family) {
+        return familyOffsets[family + 1];
+    }
+
+    /**
+     * @return the families accepted by the filter as a chunk which is not terminated, keeping their byte ranges
+     */
+    RenderedChunk families(Predicate<String> familyFilter) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        List<String> selectedNames = new ArrayList<>();
+        List<Integer> selectedOffsets = new ArrayList<>();
+        for (int i = 0; i < familyNames.size(); i++) {
+            if (familyFilter.test(familyNames.get(i))) {
+                selectedNames.add(familyNames.get(i));
+                selectedOffsets.add(buffer.size());
+                buffer.write(bytes, familyOffsets[i], familyOffsets[i + 1] - familyOffsets[i]);
+            }
+        }
+        selectedOffsets.add(buffer.size());
+        return new RenderedChunk(buffer.toByteArray(), List.copyOf(selectedNames),
+                selectedOffsets.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Concatenates the byte ranges of the families accepted by the filter and the bytes following the last family,
+     * without rendering anything again.
+     */
+    byte[] select(Predicate<String> familyFilter) {
+        int familyCount = familyNames.size();
+        int trailerStart = familyOffsets[familyCount];
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (int i = 0; i < familyCount; i++) {
+            if (familyFilter.test(familyNames.get(i))) {
+                buffer.write(bytes, familyOffsets[i], familyOffsets[i + 1] - familyOffsets[i]);
+            }
+        }
+        buffer.write(bytes, trailerStart, bytes.length - trailerStart);
+        return buffer.toByteArray();
+    }
+}
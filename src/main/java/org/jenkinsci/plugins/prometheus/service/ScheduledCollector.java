@@ -0,0 +1,137 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Collector;
+import org.jenkinsci.plugins.prometheus.config.disabledmetrics.FilteredMetricEnumeration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A registered {@link Collector} which is run on its own schedule. It keeps the chunks rendered by its last successful run,
+ * so a collector which is not due or does not finish within its timeout still contributes its previous results.
+ */
+final class ScheduledCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledCollector.class);
+
+    // the collection worker does not tick exactly on time, a collector is due slightly before its interval elapsed
+    private static final long SCHEDULING_TOLERANCE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final Collector collector;
+
+    private volatile Map<ExpositionFormat, RenderedChunk> lastChunks = Map.of();
+    private volatile boolean stale;
+    private Future<Map<ExpositionFormat, RenderedChunk>> pending;
+    private long lastSubmitted;
+    private Set<ExpositionFormat> submittedFormats = Set.of();
+
+    ScheduledCollector(String name, Collector collector) {
+        this.name = name;
+        this.collector = collector;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Collector getCollector() {
+        return collector;
+    }
+
+    boolean isStale() {
+        return stale;
+    }
+
+    Map<ExpositionFormat, RenderedChunk> getLastChunks() {
+        return lastChunks;
+    }
+
+    /**
+     * Starts a run on the given executor if the interval elapsed or the requested formats changed since the last run.
+     * Nothing is started as long as the result of the previous run has not been picked up by {@link #await(long, TimeUnit)}.
+     *
+     * @return true if a run was started
+     */
+    synchronized boolean submit(Executor executor, Set<ExpositionFormat> formats, long interval, TimeUnit unit) {
+        if (pending != null) {
+            logger.debug("Collector {} is still running, skipping this cycle", name);
+            return false;
+        }
+        long now = System.nanoTime();
+        if (lastSubmitted != 0 && formats.equals(submittedFormats)
+                && now - lastSubmitted < unit.toNanos(interval) - SCHEDULING_TOLERANCE_NANOS) {
+            return false;
+        }
+        lastSubmitted = now;
+        submittedFormats = formats;
+        FutureTask<Map<ExpositionFormat, RenderedChunk>> task = new FutureTask<>(() -> {
+            long started = System.nanoTime();
+            List<Collector.MetricFamilySamples> familySamples = collector.collect();
+            Map<ExpositionFormat, RenderedChunk> chunks = ExpositionRenderer.render(formats, new FilteredMetricEnumeration(familySamples.iterator()));
+            CollectionStatistics.get().recordCollectorRun(name, System.nanoTime() - started, familySamples);
+            return chunks;
+        });
+        pending = task;
+        executor.execute(task);
+        return true;
+    }
+
+    /**
+     * Waits until the current run finished, but at most until the given timeout measured from its submission elapsed.
+     * A run still waiting for a free worker counts against its timeout, so a busy pool does not prolong the cycle.
+     *
+     * @return the chunks of the current run or the chunks of the last successful run if there is no current run,
+     * or it failed or timed out
+     */
+    Map<ExpositionFormat, RenderedChunk> await(long timeout, TimeUnit unit) throws InterruptedException {
+        Future<Map<ExpositionFormat, RenderedChunk>> future;
+        long submitted;
+        synchronized (this) {
+            future = pending;
+            submitted = lastSubmitted;
+        }
+        if (future == null) {
+            return lastChunks;
+        }
+        try {
+            // a run left running by an earlier cycle is past its deadline and only picked up if it finished meanwhile
+            long remainingNanos = unit.toNanos(timeout) - (System.nanoTime() - submitted);
+            Map<ExpositionFormat, RenderedChunk> chunks = future.get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+            lastChunks = chunks;
+            markStale(false);
+            consumed(future);
+            return chunks;
+        } catch (TimeoutException e) {
+            // the run is left running, a later cycle picks up its result instead of starting another run
+            logger.warn("Collector {} did not finish within {} {}, exposing its previous results", name, timeout, unit);
+            CollectionStatistics.get().recordCollectorTimeout(name);
+        } catch (ExecutionException e) {
+            logger.warn("Collector {} failed, exposing its previous results", name, e.getCause());
+            CollectionStatistics.get().recordCollectorError(name);
+            consumed(future);
+        }
+        markStale(true);
+        return lastChunks;
+    }
+
+    private void markStale(boolean stale) {
+        this.stale = stale;
+        CollectionStatistics.get().recordCollectorStale(name, stale);
+    }
+
+    private synchronized void consumed(Future<Map<ExpositionFormat, RenderedChunk>> future) {
+        if (pending == future) {
+            pending = null;
+        }
+    }
+}
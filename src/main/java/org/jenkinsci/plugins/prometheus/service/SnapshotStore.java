@@ -0,0 +1,152 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import io.prometheus.client.Collector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the latest {@link MetricsSnapshot} in a gzip compressed file, so it can be served after a restart until the
+ * first collection finishes. The rendered expositions are stored together with their family index, the version and
+ * the creation time of the snapshot. The file is replaced atomically, a reader never sees a partially written snapshot.
+ * <p>
+ * A restored snapshot gets a version of its own, as its body differs from the one served under the stored version.
+ */
+final class SnapshotStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x50524f4d;
+    private static final int FILE_VERSION = 1;
+
+    static final String RESTORED_VERSION_SUFFIX = "-restored";
+
+    private final Path file;
+
+    SnapshotStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes the families of the snapshot accepted by the filter to a temporary file and moves it over the previous one.
+     */
+    void save(MetricsSnapshot snapshot, Predicate<String> familyFilter) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp), 8192)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeLong(snapshot.getCreatedMillis());
+                out.writeUTF(snapshot.getVersion() == null ? "" : snapshot.getVersion());
+                List<ExpositionFormat> formats = new ArrayList<>();
+                for (ExpositionFormat format : ExpositionFormat.values()) {
+                    if (snapshot.supports(format)) {
+                        formats.add(format);
+                    }
+                }
+                out.writeInt(formats.size());
+                for (ExpositionFormat format : formats) {
+                    writeChunk(out, format, snapshot.getChunk(format).families(familyFilter));
+                }
+            }
+            move(temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the stored snapshot and appends the given families to it, rendered in every stored format.
+     *
+     * @return the restored snapshot or null if there is none or it cannot be read
+     */
+    @CheckForNull
+    MetricsSnapshot load(List<Collector.MetricFamilySamples> additionalFamilies, boolean compress) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 8192)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FILE_VERSION) {
+                LOGGER.info("Ignoring metrics snapshot {} written in an unknown format", file);
+                return null;
+            }
+            long createdMillis = in.readLong();
+            String version = in.readUTF();
+            int formatCount = in.readInt();
+            Map<ExpositionFormat, RenderedChunk> chunks = new EnumMap<>(ExpositionFormat.class);
+            for (int i = 0; i < formatCount; i++) {
+                ExpositionFormat format = ExpositionFormat.valueOf(in.readUTF());
+                chunks.put(format, readChunk(in));
+            }
+            Map<ExpositionFormat, RenderedChunk> additional = ExpositionRenderer.render(chunks.keySet(),
+                    Collections.enumeration(additionalFamilies));
+            return MetricsSnapshot.fromChunks(ExpositionRenderer.join(chunks.keySet(), List.of(chunks, additional)),
+                    compress, version.isEmpty() ? null : version + RESTORED_VERSION_SUFFIX, createdMillis);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to restore the metrics snapshot from {}", file, e);
+            return null;
+        }
+    }
+
+    private void move(Path temp) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, ExpositionFormat format, RenderedChunk chunk) throws IOException {
+        out.writeUTF(format.name());
+        List<String> familyNames = chunk.getFamilyNames();
+        out.writeInt(familyNames.size());
+        for (int i = 0; i < familyNames.size(); i++) {
+            out.writeUTF(familyNames.get(i));
+            out.writeInt(chunk.getFamilyStart(i));
+        }
+        out.writeInt(chunk.getBytes().length);
+        out.write(chunk.getBytes());
+    }
+
+    private static RenderedChunk readChunk(DataInputStream in) throws IOException {
+        int familyCount = in.readInt();
+        if (familyCount < 0) {
+            throw new IOException("Invalid family count " + familyCount);
+        }
+        List<String> familyNames = new ArrayList<>(Math.min(familyCount, 4096));
+        int[] familyOffsets = new int[familyCount + 1];
+        for (int i = 0; i < familyCount; i++) {
+            familyNames.add(in.readUTF());
+            familyOffsets[i] = in.readInt();
+        }
+        int length = in.readInt();
+        familyOffsets[familyCount] = length;
+        for (int i = 0; i < familyCount; i++) {
+            if (familyOffsets[i] < (i == 0 ? 0 : familyOffsets[i - 1]) || familyOffsets[i] > length) {
+                throw new IOException("Invalid offset of family " + familyNames.get(i));
+            }
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new RenderedChunk(bytes, List.copyOf(familyNames), familyOffsets);
+    }
+}
@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.prometheus.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.Run;
+import jenkins.util.SystemProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of values calculated from completed builds. The values are keyed by the external id of the build,
+ * so they outlive the build being dropped from memory and loaded again, and once the cache is full the least recently
+ * used value makes room for the new one.
+ * <p>
+ * The size is taken from the system property {@code <owner class name>.maxCachedRuns}.
+ */
+public final class BuildCache<V> {
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final Map<String, V> values;
+
+    public BuildCache(Class<?> owner) {
+        this(SystemProperties.getInteger(owner.getName() + ".maxCachedRuns", DEFAULT_MAX_SIZE));
+    }
+
+    BuildCache(int maxSize) {
+        this.values = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the value of the build or null if there is none
+     */
+    @CheckForNull
+    public synchronized V get(Run<?, ?> run) {
+        String key = key(run);
+        return key == null ? null : values.get(key);
+    }
+
+    public synchronized void put(Run<?, ?> run, V value) {
+        String key = key(run);
+        if (key != null) {
+            values.put(key, value);
+        }
+    }
+
+    public synchronized void clear() {
+        values.clear();
+    }
+
+    /**
+     * @return the key of the build or null if it does not belong to a job yet. The start time tells apart builds of
+     * a job which has been deleted and created again.
+     */
+    @CheckForNull
+    private static String key(Run<?, ?> run) {
+        String id = run.getExternalizableId();
+        return id == null ? null : id + "@" + run.getTimeInMillis();
+    }
+}
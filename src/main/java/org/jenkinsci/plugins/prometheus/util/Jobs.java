@@ -3,6 +3,8 @@ package org.jenkinsci.plugins.prometheus.util;
 import hudson.model.Job;
 import jenkins.model.Jenkins;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -13,11 +15,94 @@ public final class Jobs {
     }
 
     public static void forEachJob(Consumer<Job> consumer) {
+        forEachJob(0, 1, consumer);
+    }
+
+    /**
+     * Visits only the jobs of the given shard, the other jobs are skipped before anything else than their name is read.
+     *
+     * @param shard      - index of the shard, between 0 and shardCount - 1
+     * @param shardCount - number of shards the jobs are split into
+     */
+    public static void forEachJob(int shard, int shardCount, Consumer<Job> consumer) {
+        for (Job item : getJobs(shard, shardCount)) {
+            consumer.accept(item);
+        }
+    }
+
+    /**
+     * @return the jobs of the given shard, see {@link #forEachJob(int, int, Consumer)}
+     */
+    public static List<Job> getJobs(int shard, int shardCount) {
+        List<Job> jobs = getAllJobs();
+        if (shardCount <= 1) {
+            return jobs;
+        }
+        List<Job> shardJobs = new ArrayList<>();
+        for (Job item : jobs) {
+            if (isInShard(item.getFullName(), shard, shardCount)) {
+                shardJobs.add(item);
+            }
+        }
+        return shardJobs;
+    }
+
+    private static List<Job> getAllJobs() {
         List<Job> jobs = Jenkins.get().getAllItems(Job.class);
-        if (jobs != null) {
-            for (Job item : jobs) {
-                consumer.accept(item);
+        return jobs == null ? new ArrayList<>() : jobs;
+    }
+
+    /**
+     * @return true if the job with the given full name belongs to the given shard
+     */
+    public static boolean isInShard(String fullName, int shard, int shardCount) {
+        return shardOf(fullName, shardCount) == shard;
+    }
+
+    private static int shardOf(String fullName, int shardCount) {
+        // String.hashCode is specified, so the assignment is stable across restarts
+        return Math.floorMod(fullName.hashCode(), shardCount);
+    }
+
+    /**
+     * The jobs split into shards, shared by the collectors of all shards. The item tree is traversed once when a shard
+     * first asks for its jobs after the partition has been invalidated, instead of once per shard.
+     */
+    public static final class Partition {
+
+        private final int shardCount;
+        private List<List<Job>> shards;
+
+        public Partition(int shardCount) {
+            this.shardCount = shardCount;
+        }
+
+        public int getShardCount() {
+            return shardCount;
+        }
+
+        /**
+         * Has to be called once per collection, so the shards see the jobs created, moved or deleted since.
+         */
+        public synchronized void invalidate() {
+            shards = null;
+        }
+
+        /**
+         * @return the jobs of the given shard, see {@link #isInShard(String, int, int)}
+         */
+        public synchronized List<Job> getJobs(int shard) {
+            if (shards == null) {
+                List<List<Job>> split = new ArrayList<>(shardCount);
+                for (int i = 0; i < shardCount; i++) {
+                    split.add(new ArrayList<>());
+                }
+                for (Job item : getAllJobs()) {
+                    split.get(shardOf(item.getFullName(), shardCount)).add(item);
+                }
+                shards = split;
             }
+            return Collections.unmodifiableList(shards.get(shard));
         }
     }
 }
@@ -13,22 +13,26 @@ import java.util.Map;
 public class Runs {
 
     public static boolean includeBuildInMetrics(Run build) {
-        boolean include = false;
-        if (!build.isBuilding()) {
-            include = true;
-            Result result = build.getResult();
-            if (result != null) {
-                if (result == Result.ABORTED) {
-                    include = PrometheusConfiguration.get().isCountAbortedBuilds();
-                } else if (result == Result.FAILURE) {
-                    include = PrometheusConfiguration.get().isCountFailedBuilds();
-                } else if (result == Result.NOT_BUILT) {
-                    include = PrometheusConfiguration.get().isCountNotBuiltBuilds();
-                } else if (result == Result.SUCCESS) {
-                    include = PrometheusConfiguration.get().isCountSuccessfulBuilds();
-                } else if (result == Result.UNSTABLE) {
-                    include = PrometheusConfiguration.get().isCountUnstableBuilds();
-                }
+        return !build.isBuilding() && includeResultInMetrics(build.getResult());
+    }
+
+    /**
+     * @param result - the result of a completed build, null if unknown
+     * @return whether completed builds with the given result are included in the metrics
+     */
+    public static boolean includeResultInMetrics(Result result) {
+        boolean include = true;
+        if (result != null) {
+            if (result == Result.ABORTED) {
+                include = PrometheusConfiguration.get().isCountAbortedBuilds();
+            } else if (result == Result.FAILURE) {
+                include = PrometheusConfiguration.get().isCountFailedBuilds();
+            } else if (result == Result.NOT_BUILT) {
+                include = PrometheusConfiguration.get().isCountNotBuiltBuilds();
+            } else if (result == Result.SUCCESS) {
+                include = PrometheusConfiguration.get().isCountSuccessfulBuilds();
+            } else if (result == Result.UNSTABLE) {
+                include = PrometheusConfiguration.get().isCountUnstableBuilds();
             }
         }
         return include;
@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.prometheus;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.FailureBuilder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@WithJenkins
+public class JobCollectorTest {
+
+    @Test
+    void shouldCollectTheSameMetricsInParallel(JenkinsRule j) throws Exception {
+        createJobs(j);
+        PrometheusConfiguration.get().setPerBuildMetrics(true);
+
+        assertSameMetrics(collect(1, false), collect(4, false));
+    }
+
+    @Test
+    void shouldCollectTheSameMetricsInParallelIncrementally(JenkinsRule j) throws Exception {
+        createJobs(j);
+
+        assertSameMetrics(collect(1, true), collect(4, true));
+    }
+
+    private static void createJobs(JenkinsRule j) throws Exception {
+        for (int i = 0; i < 6; i++) {
+            FreeStyleProject project = j.createFreeStyleProject("job-" + i);
+            for (int build = 0; build <= i % 3; build++) {
+                j.buildAndAssertSuccess(project);
+            }
+        }
+        FreeStyleProject failing = j.createFreeStyleProject("failing");
+        failing.getBuildersList().add(new FailureBuilder());
+        j.buildAndAssertStatus(Result.FAILURE, failing);
+        // never built
+        j.createFreeStyleProject("new");
+    }
+
+    private static List<MetricFamilySamples> collect(int parallelism, boolean incremental) {
+        PrometheusConfiguration.get().setJobTraversalParallelism(parallelism);
+        PrometheusConfiguration.get().setIncrementalJobMetrics(incremental);
+        return new JobCollector().collect();
+    }
+
+    private static void assertSameMetrics(List<MetricFamilySamples> serial, List<MetricFamilySamples> parallel) {
+        assertFalse(serial.isEmpty());
+        assertEquals(familyNames(serial), familyNames(parallel));
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(samples(serial.get(i)), samples(parallel.get(i)), serial.get(i).name);
+        }
+    }
+
+    private static List<String> familyNames(List<MetricFamilySamples> families) {
+        return families.stream().map(family -> family.name).collect(Collectors.toList());
+    }
+
+    // the order of the samples within a family depends on the collectors, the creation time on when they were created
+    private static Set<String> samples(MetricFamilySamples family) {
+        return family.samples.stream()
+                .filter(sample -> !sample.name.endsWith("_created"))
+                .map(sample -> sample.name + sample.labelNames + sample.labelValues + "=" + sample.value)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,35 @@
+package org.jenkinsci.plugins.prometheus.collectors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class LabelInternerTest {
+
+    @Test
+    void shouldReturnSameArrayForEqualTuples() {
+        LabelInterner interner = new LabelInterner();
+
+        String[] first = interner.intern(new String[]{new String("folder/job"), "NA", "true"});
+        String[] second = interner.intern(new String[]{new String("folder/job"), "NA", "true"});
+
+        assertSame(first, second);
+        assertArrayEquals(new String[]{"folder/job", "NA", "true"}, second);
+    }
+
+    @Test
+    void shouldShareValuesBetweenDifferentTuples() {
+        LabelInterner interner = new LabelInterner();
+
+        String[] job = interner.intern(new String[]{new String("folder/job"), "NA"});
+        String[] build = interner.intern(new String[]{new String("folder/job"), "NA", "1"});
+        String[] otherBuild = interner.intern(new String[]{new String("folder/job"), "NA", null});
+
+        assertNotSame(job, build);
+        assertSame(job[0], build[0]);
+        assertSame(job[0], otherBuild[0]);
+        assertArrayEquals(new String[]{"folder/job", "NA", null}, otherBuild);
+    }
+}
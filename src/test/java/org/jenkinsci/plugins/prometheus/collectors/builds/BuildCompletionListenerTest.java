@@ -5,6 +5,9 @@ import hudson.model.TaskListener;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.Issue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
 
@@ -27,4 +30,23 @@ class BuildCompletionListenerTest {
         assertEquals(0, sut.getRunStack().size(), "Unregister should clear the list. Otherwise a memory leak can occur.");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void filteredIteratorOnlyTakesMatchingRuns() {
+        Run<?,?> matching = mock(Run.class);
+        Run<?,?> other = mock(Run.class);
+        TaskListener taskListener = mock(TaskListener.class);
+
+        BuildCompletionListener sut = new BuildCompletionListener();
+        sut.onCompleted(matching, taskListener);
+        sut.onCompleted(other, taskListener);
+
+        List<Run<?,?>> runs = new ArrayList<>();
+        try (BuildCompletionListener.CloseableIterator<Run<?,?>> iterator = sut.iterator(run -> run == matching)) {
+            iterator.forEachRemaining(runs::add);
+        }
+
+        assertEquals(List.of(matching), runs);
+        assertEquals(List.of(other), sut.getRunStack(), "Runs of other shards have to be kept for them.");
+    }
+}
@@ -2,11 +2,18 @@ package org.jenkinsci.plugins.prometheus.collectors.builds;
 
 import io.prometheus.client.Collector;
 import org.jenkinsci.plugins.prometheus.collectors.testutils.MockedRunCollectorTest;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.jenkinsci.plugins.prometheus.service.CollectionStatistics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class BuildDurationGaugeTest extends MockedRunCollectorTest {
 
@@ -37,4 +44,84 @@ public class BuildDurationGaugeTest extends MockedRunCollectorTest {
         Assertions.assertEquals(1, collect.size());
         Assertions.assertEquals(0, collect.get(0).samples.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSeriesAboveLimitAreFoldedIntoOverflowSeries() {
+        Mockito.when(mock.isBuilding()).thenReturn(false);
+        Mockito.when(mock.getDuration()).thenReturn(1000L);
+
+        BuildDurationGauge sut = new BuildDurationGauge(new String[]{"jenkins_job", "repo"}, getNamespace(), getSubSystem(), "");
+        sut.setMaxSeries(2);
+
+        sut.calculateMetric(mock, new String[]{"job1", "repo1"});
+        sut.calculateMetric(mock, new String[]{"job2", "repo1"});
+        sut.calculateMetric(mock, new String[]{"job1", "repo1"});
+        sut.calculateMetric(mock, new String[]{"job3", "repo1"});
+        sut.calculateMetric(mock, new String[]{"job4", "repo1"});
+
+        List<Collector.MetricFamilySamples> collect = sut.collect();
+        Assertions.assertEquals(1, collect.size());
+        List<Collector.MetricFamilySamples.Sample> samples = collect.get(0).samples;
+        Assertions.assertEquals(3, samples.size());
+        Assertions.assertTrue(samples.stream().anyMatch(sample -> sample.labelValues.equals(List.of("job1", "repo1"))));
+        Assertions.assertTrue(samples.stream().anyMatch(sample -> sample.labelValues.equals(List.of("job2", "repo1"))));
+        Assertions.assertTrue(samples.stream().anyMatch(sample -> sample.labelValues.equals(List.of("__overflow__", "__overflow__"))));
+    }
+
+    @Test
+    public void testSeriesLimitHoldsForConcurrentCalculations() throws InterruptedException {
+        Mockito.when(mock.isBuilding()).thenReturn(false);
+        Mockito.when(mock.getDuration()).thenReturn(1000L);
+
+        BuildDurationGauge sut = new BuildDurationGauge(new String[]{"jenkins_job", "repo"}, getNamespace(), getSubSystem(), "");
+        sut.setMaxSeries(5);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < 100; i++) {
+            String job = "job" + i;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sut.calculateMetric(mock, new String[]{job, "repo1"});
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        try (MockedStatic<PrometheusConfiguration> configurationStatic = Mockito.mockStatic(PrometheusConfiguration.class)) {
+            PrometheusConfiguration configuration = Mockito.mock(PrometheusConfiguration.class);
+            Mockito.when(configuration.getDefaultNamespace()).thenReturn("default");
+            configurationStatic.when(PrometheusConfiguration::get).thenReturn(configuration);
+
+            Assertions.assertEquals(6, sut.collect().get(0).samples.size());
+            // every rejected label value combination is counted once, no matter how often it is collected
+            sut.collect();
+            Assertions.assertEquals(95.0, CollectionStatistics.get().collect().stream()
+                    .flatMap(family -> family.samples.stream())
+                    .filter(sample -> sample.name.equals("default_jenkins_series_rejected")
+                            && sample.labelValues.equals(List.of("default_jenkins_builds_build_duration_milliseconds")))
+                    .findFirst()
+                    .orElseThrow()
+                    .value);
+        }
+    }
+
+    @Test
+    public void testSeriesAreNotLimitedByDefault() {
+        Mockito.when(mock.isBuilding()).thenReturn(false);
+        Mockito.when(mock.getDuration()).thenReturn(1000L);
+
+        BuildDurationGauge sut = new BuildDurationGauge(new String[]{"jenkins_job", "repo"}, getNamespace(), getSubSystem(), "");
+
+        for (int i = 0; i < 10; i++) {
+            sut.calculateMetric(mock, new String[]{"job" + i, "repo1"});
+        }
+
+        Assertions.assertEquals(10, sut.collect().get(0).samples.size());
+    }
+}
@@ -0,0 +1,117 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import hudson.model.Result;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BuildIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldReadAppendedRecords() throws IOException {
+        Path file = directory.resolve(BuildIndex.FILE_NAME);
+
+        append(file, List.of(
+                new BuildIndex.Record(1, Result.SUCCESS, 1000L, 200L, 10L, 5, 1, 2),
+                new BuildIndex.Record(2, Result.FAILURE, 2000L, 300L, -1L, -1, -1, -1)));
+        append(file, List.of(new BuildIndex.Record(3, null, 3000L, 400L, 20L, 0, 0, 0)));
+
+        SortedMap<Integer, BuildIndex.Record> records = BuildIndex.read(file).getRecords();
+        assertEquals(List.of(1, 2, 3), List.copyOf(records.keySet()));
+        assertEquals(BuildIndex.HEADER_SIZE + 3 * BuildIndex.RECORD_SIZE, Files.size(file));
+
+        BuildIndex.Record first = records.get(1);
+        assertEquals(Result.SUCCESS, first.getResult());
+        assertEquals(1000L, first.getStartMillis());
+        assertEquals(200L, first.getDurationMillis());
+        assertEquals(10L, first.getQueuingDurationMillis());
+        assertEquals(5, first.getTestsTotal());
+        assertEquals(1, first.getTestsFailed());
+        assertEquals(2, first.getTestsSkipped());
+        assertEquals(Result.FAILURE, records.get(2).getResult());
+        assertEquals(-1, records.get(2).getTestsTotal());
+        assertNull(records.get(3).getResult());
+    }
+
+    @Test
+    public void shouldTakeLastRecordOfABuild() throws IOException {
+        Path file = directory.resolve(BuildIndex.FILE_NAME);
+
+        append(file, List.of(new BuildIndex.Record(1, Result.SUCCESS, 1000L, 200L, -1L, -1, -1, -1)));
+        append(file, List.of(new BuildIndex.Record(1, Result.ABORTED, 1000L, 250L, -1L, -1, -1, -1)));
+
+        SortedMap<Integer, BuildIndex.Record> records = BuildIndex.read(file).getRecords();
+        assertEquals(1, records.size());
+        assertEquals(Result.ABORTED, records.get(1).getResult());
+        assertEquals(250L, records.get(1).getDurationMillis());
+    }
+
+    @Test
+    public void shouldOverwritePartialRecord() throws IOException {
+        Path file = directory.resolve(BuildIndex.FILE_NAME);
+        append(file, List.of(new BuildIndex.Record(1, Result.SUCCESS, 1000L, 200L, -1L, -1, -1, -1)));
+        Files.write(file, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertEquals(List.of(1), List.copyOf(BuildIndex.read(file).getRecords().keySet()));
+
+        append(file, List.of(new BuildIndex.Record(2, Result.SUCCESS, 2000L, 300L, -1L, -1, -1, -1)));
+        assertEquals(List.of(1, 2), List.copyOf(BuildIndex.read(file).getRecords().keySet()));
+        assertEquals(BuildIndex.HEADER_SIZE + 2 * BuildIndex.RECORD_SIZE, Files.size(file));
+    }
+
+    @Test
+    public void shouldIgnoreMissingOrUnknownIndex() throws IOException {
+        Path file = directory.resolve(BuildIndex.FILE_NAME);
+
+        assertTrue(BuildIndex.read(file).getRecords().isEmpty());
+
+        Files.write(file, "not a build index, but long enough".getBytes(StandardCharsets.UTF_8));
+        assertTrue(BuildIndex.read(file).getRecords().isEmpty());
+        assertEquals(0, BuildIndex.read(file).getWatermark());
+
+        append(file, List.of(new BuildIndex.Record(1, Result.SUCCESS, 1000L, 200L, -1L, -1, -1, -1)));
+        assertEquals(List.of(1), List.copyOf(BuildIndex.read(file).getRecords().keySet()));
+        assertEquals(BuildIndex.HEADER_SIZE + BuildIndex.RECORD_SIZE, Files.size(file));
+    }
+
+    @Test
+    public void shouldKeepWatermarkOfBackfill() throws IOException {
+        Path file = directory.resolve(BuildIndex.FILE_NAME);
+
+        // a build which completed before the history has been walked
+        append(file, List.of(new BuildIndex.Record(5, Result.SUCCESS, 5000L, 200L, -1L, -1, -1, -1)));
+        assertEquals(0, BuildIndex.read(file).getWatermark());
+
+        BuildIndex.append(file, List.of(
+                new BuildIndex.Record(3, Result.SUCCESS, 3000L, 200L, -1L, -1, -1, -1),
+                new BuildIndex.Record(4, Result.FAILURE, 4000L, 200L, -1L, -1, -1, -1)), 5);
+        append(file, List.of(new BuildIndex.Record(6, Result.SUCCESS, 6000L, 200L, -1L, -1, -1, -1)));
+
+        BuildIndex.Contents contents = BuildIndex.read(file);
+        assertEquals(5, contents.getWatermark());
+        assertEquals(List.of(3, 4, 5, 6), List.copyOf(contents.getRecords().keySet()));
+
+        BuildIndex.append(file, List.of(), 6);
+        assertEquals(6, BuildIndex.read(file).getWatermark());
+        assertEquals(BuildIndex.HEADER_SIZE + 4 * BuildIndex.RECORD_SIZE, Files.size(file));
+    }
+
+    // appends like the listener does, keeping the watermark
+    private static void append(Path file, List<BuildIndex.Record> records) throws IOException {
+        BuildIndex.append(file, records, BuildIndex.KEEP_WATERMARK);
+    }
+}
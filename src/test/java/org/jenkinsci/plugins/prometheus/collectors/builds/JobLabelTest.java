@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import hudson.XmlFile;
+import hudson.model.Job;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Result;
+import hudson.model.Run;
+import org.jenkinsci.plugins.prometheus.collectors.jobs.JobChangeTracker;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class JobLabelTest {
+
+    @Test
+    void shouldCalculateLabelValuesOfCompletedBuildOnce() {
+        try (MockedStatic<PrometheusConfiguration> configurationStatic = mockStatic(PrometheusConfiguration.class)) {
+            PrometheusConfiguration configuration = mockConfiguration(configurationStatic);
+            Job job = mockJob("folder/job");
+            Run run = mockRun(false, Result.SUCCESS);
+
+            assertArrayEquals(new String[]{"folder/job", "NA", "true", "branch=main", "SUCCESS", "main"}, JobLabel.getJobLabelValues(job, run));
+            assertArrayEquals(new String[]{"folder/job", "NA", "true", "branch=main", "SUCCESS", "main"}, JobLabel.getJobLabelValues(job, run));
+            verify(run, times(1)).getActions(ParametersAction.class);
+
+            // saving the configuration may change the labels
+            new JobChangeTracker.ConfigurationChangeListener().onChange(configuration, mock(XmlFile.class));
+            when(configuration.isAppendParamLabel()).thenReturn(false);
+            assertArrayEquals(new String[]{"folder/job", "NA", "true", "SUCCESS", "main"}, JobLabel.getJobLabelValues(job, run));
+            verify(run, times(2)).getActions(ParametersAction.class);
+        }
+    }
+
+    @Test
+    void shouldNotCacheLabelValuesOfRunningBuild() {
+        try (MockedStatic<PrometheusConfiguration> configurationStatic = mockStatic(PrometheusConfiguration.class)) {
+            mockConfiguration(configurationStatic);
+            Job job = mockJob("job");
+            Run run = mockRun(true, null);
+
+            assertArrayEquals(new String[]{"job", "NA", "true", "branch=main", "RUNNING", "main"}, JobLabel.getJobLabelValues(job, run));
+            assertArrayEquals(new String[]{"job", "NA", "true", "branch=main", "RUNNING", "main"}, JobLabel.getJobLabelValues(job, run));
+            verify(run, times(2)).getActions(ParametersAction.class);
+        }
+    }
+
+    private static PrometheusConfiguration mockConfiguration(MockedStatic<PrometheusConfiguration> configurationStatic) {
+        PrometheusConfiguration configuration = mock(PrometheusConfiguration.class);
+        when(configuration.isAppendParamLabel()).thenReturn(true);
+        when(configuration.isAppendStatusLabel()).thenReturn(true);
+        when(configuration.getLabeledBuildParameterNamesAsArray()).thenReturn(new String[]{"branch"});
+        configurationStatic.when(PrometheusConfiguration::get).thenReturn(configuration);
+        return configuration;
+    }
+
+    private static Job mockJob(String fullName) {
+        Job job = mock(Job.class);
+        when(job.getFullName()).thenReturn(fullName);
+        when(job.isBuildable()).thenReturn(true);
+        return job;
+    }
+
+    private static Run mockRun(boolean building, Result result) {
+        ParameterValue parameterValue = mock(ParameterValue.class);
+        when(parameterValue.getName()).thenReturn("branch");
+        when(parameterValue.getValue()).thenReturn("main");
+        Run run = mock(Run.class);
+        when(run.getExternalizableId()).thenReturn("job#1");
+        when(run.isBuilding()).thenReturn(building);
+        when(run.getResult()).thenReturn(result);
+        when(run.getActions(ParametersAction.class)).thenReturn(List.of(new ParametersAction(parameterValue)));
+        return run;
+    }
+}
@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import com.cloudbees.workflow.rest.external.StatusExt;
+import hudson.model.Result;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithJenkins
+public class StageRecorderTest {
+
+    @Test
+    void shouldRecordTheStagesFoundByAScan(JenkinsRule j) throws Exception {
+        PrometheusConfiguration.get().setRecordStages(true);
+        WorkflowJob job = j.createProject(WorkflowJob.class, "pipeline");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('build') { echo 'building' }\n" +
+                "stage('check') { unstable 'flaky' }\n" +
+                "stage('test') { error 'failing' }", true));
+
+        WorkflowRun run = j.buildAndAssertStatus(Result.FAILURE, job);
+
+        List<StageRecords.Stage> recorded = StageRecords.getCachedStages(run);
+        assertNotNull(recorded);
+        List<StageRecords.Stage> scanned = StageRecords.scan(run);
+        assertEquals(3, scanned.size());
+        assertEquals(List.of(StatusExt.SUCCESS, StatusExt.UNSTABLE, StatusExt.FAILED),
+                List.of(scanned.get(0).getStatus(), scanned.get(1).getStatus(), scanned.get(2).getStatus()));
+        assertEquals(scanned.size(), recorded.size());
+        for (int i = 0; i < scanned.size(); i++) {
+            assertEquals(scanned.get(i).getName(), recorded.get(i).getName());
+            assertEquals(scanned.get(i).getStatus(), recorded.get(i).getStatus());
+            assertEquals(scanned.get(i).getDurationMillis(), recorded.get(i).getDurationMillis());
+        }
+        assertTrue(StageRecorder.getRunningStages(run).isEmpty());
+    }
+
+    @Test
+    void shouldLeaveBuildsWithoutStagesToTheScan(JenkinsRule j) throws Exception {
+        PrometheusConfiguration.get().setRecordStages(true);
+        WorkflowJob job = j.createProject(WorkflowJob.class, "pipeline");
+        job.setDefinition(new CpsFlowDefinition("echo 'no stages'", true));
+
+        WorkflowRun run = j.buildAndAssertSuccess(job);
+
+        assertNull(StageRecords.getCachedStages(run));
+    }
+}
@@ -0,0 +1,52 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import com.cloudbees.workflow.rest.external.StatusExt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class StageRecordsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldReadWrittenStages() throws IOException {
+        Path file = directory.resolve(StageRecords.FILE_NAME);
+
+        StageRecords.write(file, List.of(
+                new StageRecords.Stage("build", StatusExt.SUCCESS, 1200L),
+                new StageRecords.Stage(null, null, 0L)));
+
+        List<StageRecords.Stage> stages = StageRecords.read(file);
+        assertNotNull(stages);
+        assertEquals(2, stages.size());
+        assertEquals("build", stages.get(0).getName());
+        assertEquals(StatusExt.SUCCESS, stages.get(0).getStatus());
+        assertEquals(1200L, stages.get(0).getDurationMillis());
+        assertNull(stages.get(1).getName());
+        assertNull(stages.get(1).getStatus());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count(), "No temporary files should be left behind");
+        }
+    }
+
+    @Test
+    public void shouldIgnoreMissingOrCorruptStages() throws IOException {
+        Path file = directory.resolve(StageRecords.FILE_NAME);
+
+        assertNull(StageRecords.read(file));
+
+        Files.write(file, "not stages".getBytes(StandardCharsets.UTF_8));
+        assertNull(StageRecords.read(file));
+    }
+}
@@ -0,0 +1,108 @@
+package org.jenkinsci.plugins.prometheus.collectors.builds;
+
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.test.AbstractTestResultAction;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class TestResultCountsTest {
+
+    @Test
+    void shouldReadTestResultsOfCompletedBuildOnce() {
+        Run run = mockRun("job#1");
+        AbstractTestResultAction action = mockTestResults(run);
+
+        TestResultCounts counts = TestResultCounts.of(run);
+        assertNotNull(counts);
+        assertEquals(10, counts.getTotal());
+        assertEquals(2, counts.getFailed());
+        assertEquals(1, counts.getSkipped());
+        assertEquals(counts, TestResultCounts.of(run));
+        verify(run, times(1)).getAction(AbstractTestResultAction.class);
+        verify(action, times(1)).getTotalCount();
+    }
+
+    @Test
+    void shouldNotCacheTestResultsOfRunningBuild() {
+        Run run = mockRun("job#2");
+        when(run.isBuilding()).thenReturn(true);
+        mockTestResults(run);
+
+        TestResultCounts.of(run);
+        TestResultCounts.of(run);
+        verify(run, times(2)).getAction(AbstractTestResultAction.class);
+    }
+
+    @Test
+    void shouldSnapshotTestResultsWhenBuildCompletes() throws IOException {
+        try (MockedStatic<PrometheusConfiguration> configurationStatic = mockStatic(PrometheusConfiguration.class)) {
+            PrometheusConfiguration configuration = mock(PrometheusConfiguration.class);
+            when(configuration.isFetchTestResults()).thenReturn(true);
+            configurationStatic.when(PrometheusConfiguration::get).thenReturn(configuration);
+            Run run = mockRun("job#3");
+
+            new TestResultCounts.SnapshotListener().onCompleted(run, mock(TaskListener.class));
+
+            assertNull(TestResultCounts.of(run));
+            assertNull(TestResultCounts.of(run));
+            verify(run, times(1)).getAction(AbstractTestResultAction.class);
+            verify(run, times(1)).addOrReplaceAction(any(TestResultCounts.Snapshot.class));
+            verify(run, times(1)).save();
+        }
+    }
+
+    @Test
+    void shouldTakeStoredTestResultsOfBuildNotInMemory() {
+        Run run = mockRun("job#4");
+        when(run.getAction(TestResultCounts.Snapshot.class))
+                .thenReturn(new TestResultCounts.Snapshot(new TestResultCounts(10, 2, 1)));
+
+        TestResultCounts counts = TestResultCounts.of(run);
+        assertNotNull(counts);
+        assertEquals(10, counts.getTotal());
+        assertEquals(2, counts.getFailed());
+        assertEquals(1, counts.getSkipped());
+        verify(run, never()).getAction(AbstractTestResultAction.class);
+    }
+
+    @Test
+    void shouldTakeStoredAbsenceOfTestResults() {
+        Run run = mockRun("job#5");
+        when(run.getAction(TestResultCounts.Snapshot.class))
+                .thenReturn(new TestResultCounts.Snapshot(new TestResultCounts(-1, -1, -1)));
+
+        assertNull(TestResultCounts.of(run));
+        verify(run, never()).getAction(AbstractTestResultAction.class);
+    }
+
+    private static Run mockRun(String externalizableId) {
+        Run run = mock(Run.class);
+        when(run.getExternalizableId()).thenReturn(externalizableId);
+        return run;
+    }
+
+    private static AbstractTestResultAction mockTestResults(Run run) {
+        AbstractTestResultAction action = mock(AbstractTestResultAction.class);
+        when(action.getTotalCount()).thenReturn(10);
+        when(action.getFailCount()).thenReturn(2);
+        when(action.getSkipCount()).thenReturn(1);
+        when(run.getAction(AbstractTestResultAction.class)).thenReturn(action);
+        return action;
+    }
+}
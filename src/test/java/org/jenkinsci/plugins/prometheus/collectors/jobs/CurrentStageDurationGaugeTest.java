@@ -0,0 +1,89 @@
+package org.jenkinsci.plugins.prometheus.collectors.jobs;
+
+import io.prometheus.client.Collector;
+import org.jenkinsci.plugins.prometheus.collectors.builds.StageRecorder;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CurrentStageDurationGaugeTest extends JobCollectorTest {
+
+    @Mock
+    WorkflowRun currentRun;
+
+    @Test
+    public void testCollectResult() {
+        when(currentRun.isBuilding()).thenReturn(true);
+        when(job.getLastBuild()).thenReturn(currentRun);
+
+        CurrentStageDurationGauge sut = new CurrentStageDurationGauge(new String[]{"jenkins_job", "repo", "stage"}, getNamespace(), getSubSystem());
+
+        try (MockedStatic<Clock> clockStatic = Mockito.mockStatic(Clock.class);
+             MockedStatic<StageRecorder> recorderStatic = Mockito.mockStatic(StageRecorder.class)) {
+
+            Clock mockedClock = mock(Clock.class);
+            clockStatic.when(Clock::systemUTC).thenReturn(mockedClock);
+            when(mockedClock.millis()).thenReturn(2000L);
+            recorderStatic.when(() -> StageRecorder.getRunningStages(currentRun)).thenReturn(Map.of("5", new StageRecorder.RunningStage("build", 1500L)));
+
+            sut.calculateMetric(job, getLabelValues());
+            List<Collector.MetricFamilySamples> collect = sut.collect();
+
+            validateMetricFamilySampleListSize(collect, 1);
+
+            Collector.MetricFamilySamples samples = collect.get(0);
+            validateNames(samples, new String[]{"default_jenkins_builds_running_stage_duration_milliseconds"});
+            validateMetricFamilySampleSize(samples, 1);
+            validateValue(samples.samples.get(0), 500.0);
+            Assertions.assertEquals(List.of("job1", "NA", "build"), samples.samples.get(0).labelValues);
+        }
+    }
+
+    @Test
+    public void testParallelStagesOfTheSameNameReportTheLongestRunning() {
+        when(currentRun.isBuilding()).thenReturn(true);
+        when(job.getLastBuild()).thenReturn(currentRun);
+
+        CurrentStageDurationGauge sut = new CurrentStageDurationGauge(new String[]{"jenkins_job", "repo", "stage"}, getNamespace(), getSubSystem());
+
+        try (MockedStatic<Clock> clockStatic = Mockito.mockStatic(Clock.class);
+             MockedStatic<StageRecorder> recorderStatic = Mockito.mockStatic(StageRecorder.class)) {
+
+            Clock mockedClock = mock(Clock.class);
+            clockStatic.when(Clock::systemUTC).thenReturn(mockedClock);
+            when(mockedClock.millis()).thenReturn(2000L);
+            recorderStatic.when(() -> StageRecorder.getRunningStages(currentRun)).thenReturn(Map.of(
+                    "7", new StageRecorder.RunningStage("test", 1800L),
+                    "9", new StageRecorder.RunningStage("test", 1200L)));
+
+            sut.calculateMetric(job, getLabelValues());
+            Collector.MetricFamilySamples samples = sut.collect().get(0);
+
+            validateMetricFamilySampleSize(samples, 1);
+            validateValue(samples.samples.get(0), 800.0);
+            Assertions.assertEquals(List.of("job1", "NA", "test"), samples.samples.get(0).labelValues);
+        }
+    }
+
+    @Test
+    public void testNothingCalculatedWhenNotBuilding() {
+        when(currentRun.isBuilding()).thenReturn(false);
+        when(job.getLastBuild()).thenReturn(currentRun);
+
+        CurrentStageDurationGauge sut = new CurrentStageDurationGauge(new String[]{"jenkins_job", "repo", "stage"}, getNamespace(), getSubSystem());
+
+        sut.calculateMetric(job, getLabelValues());
+
+        validateMetricFamilySampleSize(sut.collect().get(0), 0);
+    }
+}
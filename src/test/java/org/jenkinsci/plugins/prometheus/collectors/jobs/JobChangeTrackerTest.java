@@ -0,0 +1,57 @@
+package org.jenkinsci.plugins.prometheus.collectors.jobs;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JobChangeTrackerTest {
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void buildEventsChangeTheirJob() {
+        Job job = mock(Job.class);
+        when(job.getFullName()).thenReturn("tracker-test/job");
+        Run run = mock(Run.class);
+        when(run.getParent()).thenReturn(job);
+        long unrelated = JobChangeTracker.getChangeStamp("tracker-test/other");
+
+        long initial = JobChangeTracker.getChangeStamp("tracker-test/job");
+        new JobChangeTracker.RunChangeListener().onStarted(run, mock(TaskListener.class));
+        long started = JobChangeTracker.getChangeStamp("tracker-test/job");
+        new JobChangeTracker.RunChangeListener().onCompleted(run, mock(TaskListener.class));
+        long completed = JobChangeTracker.getChangeStamp("tracker-test/job");
+
+        assertNotEquals(initial, started);
+        assertNotEquals(started, completed);
+        assertEquals(unrelated, JobChangeTracker.getChangeStamp("tracker-test/other"));
+    }
+
+    @Test
+    void removingAFolderRemovesItsJobs() {
+        JobChangeTracker.jobChanged("tracker-folder/job");
+        JobChangeTracker.jobChanged("tracker-folder-sibling");
+
+        JobChangeTracker.jobRemoved("tracker-folder");
+
+        assertEquals(JobChangeTracker.getChangeStamp("never-changed"), JobChangeTracker.getChangeStamp("tracker-folder/job"));
+        assertNotEquals(JobChangeTracker.getChangeStamp("never-changed"), JobChangeTracker.getChangeStamp("tracker-folder-sibling"));
+    }
+
+    @Test
+    void configurationChangeChangesAllJobs() {
+        JobChangeTracker.jobChanged("tracker-config/job");
+        long jobStamp = JobChangeTracker.getChangeStamp("tracker-config/job");
+        long otherStamp = JobChangeTracker.getChangeStamp("tracker-config/other");
+
+        JobChangeTracker.allJobsChanged();
+
+        assertNotEquals(jobStamp, JobChangeTracker.getChangeStamp("tracker-config/job"));
+        assertNotEquals(otherStamp, JobChangeTracker.getChangeStamp("tracker-config/other"));
+    }
+}
@@ -11,6 +11,7 @@ import org.mockito.Mockito;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static com.github.stefanbirkner.systemlambda.SystemLambda.withEnvironmentVariable;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -73,6 +74,30 @@ public class PrometheusConfigurationTest {
         assertTrue(actual);
     }
 
+    @Test
+    public void shouldParseCollectorIntervals() {
+        // given
+        Mockito.doCallRealMethod().when(configuration).setCollectorIntervals(any());
+        Mockito.when(configuration.getCollectorIntervalsInSeconds()).thenCallRealMethod();
+        configuration.setCollectorIntervals("ExecutorCollector=10, DiskUsageCollector = 1800,JobCollector=0,broken");
+
+        // when
+        Map<String, Long> intervals = configuration.getCollectorIntervalsInSeconds();
+
+        // then
+        assertEquals(Map.of("ExecutorCollector", 10L, "DiskUsageCollector", 1800L), intervals);
+    }
+
+    @Test
+    public void shouldValidateCollectorIntervals() {
+        Mockito.when(configuration.doCheckCollectorIntervals(any())).thenCallRealMethod();
+
+        assertEquals(FormValidation.Kind.OK, configuration.doCheckCollectorIntervals("").kind);
+        assertEquals(FormValidation.Kind.OK, configuration.doCheckCollectorIntervals("ExecutorCollector=10,DiskUsageCollector=1800").kind);
+        assertEquals(FormValidation.Kind.ERROR, configuration.doCheckCollectorIntervals("ExecutorCollector=-1").kind);
+        assertEquals(FormValidation.Kind.ERROR, configuration.doCheckCollectorIntervals("=10").kind);
+    }
+
     @Test
     public void shouldSetDefaultValue() {
         // given
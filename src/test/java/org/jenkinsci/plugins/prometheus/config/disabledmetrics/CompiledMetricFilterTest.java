@@ -0,0 +1,102 @@
+package org.jenkinsci.plugins.prometheus.config.disabledmetrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class CompiledMetricFilterTest {
+
+    @Test
+    void testCombinedRegexesMatchAsWhole() {
+        CompiledMetricFilter filter = new CompiledMetricFilter(List.of(
+                new RegexDisabledMetric("jvm_.*"),
+                new RegexDisabledMetric("(?i)PROCESS_.*"),
+                new RegexDisabledMetric("some")));
+
+        Assertions.assertFalse(filter.isMetricEnabled("jvm_memory_bytes_used"));
+        Assertions.assertFalse(filter.isMetricEnabled("process_cpu_seconds"));
+        Assertions.assertFalse(filter.isMetricEnabled("some"));
+        Assertions.assertTrue(filter.isMetricEnabled("some_metric"));
+        Assertions.assertTrue(filter.isMetricEnabled("default_jvm_threads"));
+    }
+
+    @Test
+    void testRegexesWithBackReferencesAreMatchedOnTheirOwn() {
+        CompiledMetricFilter filter = new CompiledMetricFilter(List.of(
+                new RegexDisabledMetric("(a+)b"),
+                new RegexDisabledMetric("(x)_\\1")));
+
+        Assertions.assertFalse(filter.isMetricEnabled("aab"));
+        Assertions.assertFalse(filter.isMetricEnabled("x_x"));
+        Assertions.assertTrue(filter.isMetricEnabled("x_a"));
+    }
+
+    @Test
+    void testInvalidRegexIsIgnored() {
+        CompiledMetricFilter filter = new CompiledMetricFilter(List.of(
+                new RegexDisabledMetric("some[metric"),
+                new NamedDisabledMetric("Other_Metric")));
+
+        Assertions.assertTrue(filter.isMetricEnabled("some[metric"));
+        Assertions.assertFalse(filter.isMetricEnabled("other_metric"));
+    }
+
+    @Test
+    void testJobRegexesOnlyApplyToJobs() {
+        CompiledMetricFilter filter = new CompiledMetricFilter(List.of(
+                new JobRegexDisabledMetric("folder/.*"),
+                new RegexDisabledMetric("other/.*")));
+
+        Assertions.assertFalse(filter.isJobEnabled("folder/job"));
+        Assertions.assertTrue(filter.isJobEnabled("other/job"));
+        Assertions.assertTrue(filter.isMetricEnabled("folder/job"));
+    }
+
+    @Test
+    void testFilterIsCompiledOncePerConfiguration() {
+        DisabledMetricConfig config = new DisabledMetricConfig(List.of(new RegexDisabledMetric("some.*")));
+
+        Assertions.assertSame(config.getCompiledFilter(), config.getCompiledFilter());
+        Assertions.assertNotSame(config.getCompiledFilter(),
+                new DisabledMetricConfig(List.of(new RegexDisabledMetric("some.*"))).getCompiledFilter());
+    }
+
+    @Test
+    void testMetricDecisionsAreBounded() {
+        CompiledMetricFilter filter = new CompiledMetricFilter(List.of(new RegexDisabledMetric("disabled_.*")));
+        for (int i = 0; i < CompiledMetricFilter.MAX_CACHED_DECISIONS + 10; i++) {
+            filter.isMetricEnabled("metric_" + i);
+        }
+
+        // metrics beyond the bound are still decided
+        Assertions.assertFalse(filter.isMetricEnabled("disabled_metric"));
+    }
+
+    @Test
+    void testJobIndexHoldsMoreJobsThanTheMetricBound() {
+        CompiledMetricFilter filter = new CompiledMetricFilter(List.of(new JobRegexDisabledMetric("folder/.*")));
+        int jobCount = CompiledMetricFilter.MAX_CACHED_DECISIONS + 10;
+        for (int i = 0; i < jobCount; i++) {
+            filter.isJobEnabled("job" + i);
+        }
+        filter.isJobEnabled("folder/job");
+
+        Assertions.assertEquals(jobCount + 1, filter.getIndexedJobCount());
+        Assertions.assertFalse(filter.isJobEnabled("folder/job"));
+    }
+
+    @Test
+    void testForgetJobRemovesJobAndItemsWithin() {
+        CompiledMetricFilter filter = new CompiledMetricFilter(List.of(new JobRegexDisabledMetric("folder/.*")));
+        filter.isJobEnabled("folder");
+        filter.isJobEnabled("folder/job");
+        filter.isJobEnabled("folder-other/job");
+        Assertions.assertEquals(3, filter.getIndexedJobCount());
+
+        filter.forgetJob("folder");
+
+        Assertions.assertEquals(1, filter.getIndexedJobCount());
+        Assertions.assertTrue(filter.isJobEnabled("folder-other/job"));
+    }
+}
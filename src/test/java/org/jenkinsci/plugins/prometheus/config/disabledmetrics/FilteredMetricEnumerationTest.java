@@ -7,6 +7,9 @@ import org.mockito.MockedStatic;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import static org.mockito.Mockito.mockStatic;
 
@@ -16,8 +19,7 @@ public class FilteredMetricEnumerationTest {
     void testFilterMatches() {
         try (MockedStatic<MetricStatusChecker> statusCheckerMockedStatic = mockStatic(MetricStatusChecker.class)) {
 
-            statusCheckerMockedStatic.when(() -> MetricStatusChecker.isEnabled("metric_1")).thenReturn(false);
-            statusCheckerMockedStatic.when(() -> MetricStatusChecker.isEnabled("metric_2")).thenReturn(true);
+            statusCheckerMockedStatic.when(MetricStatusChecker::metricFilter).thenReturn((Predicate<String>) name -> !name.equals("metric_1"));
 
             List<Collector.MetricFamilySamples> list = List.of(
                     new Collector.MetricFamilySamples("metric_1", Collector.Type.GAUGE, "help1", List.of()),
@@ -46,8 +48,7 @@ public class FilteredMetricEnumerationTest {
     void testIterator() {
         try (MockedStatic<MetricStatusChecker> statusCheckerMockedStatic = mockStatic(MetricStatusChecker.class)) {
 
-            statusCheckerMockedStatic.when(() -> MetricStatusChecker.isEnabled("metric_1")).thenReturn(false);
-            statusCheckerMockedStatic.when(() -> MetricStatusChecker.isEnabled("metric_2")).thenReturn(true);
+            statusCheckerMockedStatic.when(MetricStatusChecker::metricFilter).thenReturn((Predicate<String>) name -> !name.equals("metric_1"));
 
             List<Collector.MetricFamilySamples> list = List.of(
                     new Collector.MetricFamilySamples("metric_1", Collector.Type.GAUGE, "help1", List.of()),
@@ -71,4 +72,42 @@ public class FilteredMetricEnumerationTest {
 
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFamiliesArePulledOneAtATime() {
+        try (MockedStatic<MetricStatusChecker> statusCheckerMockedStatic = mockStatic(MetricStatusChecker.class)) {
+
+            statusCheckerMockedStatic.when(MetricStatusChecker::metricFilter).thenReturn((Predicate<String>) name -> !name.equals("metric_1"));
+
+            List<Collector.MetricFamilySamples> list = List.of(
+                    new Collector.MetricFamilySamples("metric_1", Collector.Type.GAUGE, "help1", List.of()),
+                    new Collector.MetricFamilySamples("metric_2", Collector.Type.GAUGE, "help2", List.of()),
+                    new Collector.MetricFamilySamples("metric_3", Collector.Type.GAUGE, "help3", List.of())
+            );
+            AtomicInteger pulled = new AtomicInteger();
+            Iterator<Collector.MetricFamilySamples> delegate = list.iterator();
+            Iterator<Collector.MetricFamilySamples> iterator = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return delegate.hasNext();
+                }
+
+                @Override
+                public Collector.MetricFamilySamples next() {
+                    pulled.incrementAndGet();
+                    return delegate.next();
+                }
+            };
+
+            FilteredMetricEnumeration filteredMetricEnumeration = new FilteredMetricEnumeration(iterator);
+            Assertions.assertEquals(0, pulled.get());
+
+            Assertions.assertEquals("metric_2", filteredMetricEnumeration.nextElement().name);
+            Assertions.assertEquals(2, pulled.get());
+
+            Assertions.assertEquals("metric_3", filteredMetricEnumeration.nextElement().name);
+            Assertions.assertFalse(filteredMetricEnumeration.hasMoreElements());
+            Assertions.assertThrows(NoSuchElementException.class, filteredMetricEnumeration::nextElement);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.jenkinsci.plugins.prometheus.rest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FamilySelectorTest {
+
+    @Test
+    public void shouldNotSelectWithoutParameters() {
+        assertNull(FamilySelector.of(null, null));
+        assertNull(FamilySelector.of(new String[0], null));
+    }
+
+    @Test
+    public void shouldSelectByNameAndWildcard() {
+        FamilySelector selector = FamilySelector.of(new String[]{"default_jenkins_executors_*", "default_jenkins_up"}, null);
+
+        assertTrue(selector.test("default_jenkins_executors_available"));
+        assertTrue(selector.test("default_jenkins_up"));
+        assertFalse(selector.test("default_jenkins_builds_duration_milliseconds_summary"));
+    }
+
+    @Test
+    public void shouldSelectBySampleName() {
+        FamilySelector selector = FamilySelector.of(new String[]{"default_jenkins_builds_success_build_count_total"}, null);
+
+        assertTrue(selector.test("default_jenkins_builds_success_build_count"));
+    }
+
+    @Test
+    public void shouldSelectBySeriesSelector() {
+        FamilySelector selector = FamilySelector.of(null, new String[]{
+                "{__name__=~\"default_jenkins_executors_.*\"}",
+                "default_jenkins_up{job=\"jenkins\"}"});
+
+        assertTrue(selector.test("default_jenkins_executors_available"));
+        assertTrue(selector.test("default_jenkins_up"));
+        assertFalse(selector.test("default_jenkins_nodes_online"));
+    }
+
+    @Test
+    public void shouldRejectMalformedSelector() {
+        assertThrows(IllegalArgumentException.class, () -> FamilySelector.of(null, new String[]{"default_jenkins_up{job="}));
+        assertThrows(IllegalArgumentException.class, () -> FamilySelector.of(null, new String[]{"{__name__=~\"(\"}"}));
+    }
+}
@@ -5,6 +5,8 @@ import jenkins.metrics.api.Metrics;
 import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
 import org.jenkinsci.plugins.prometheus.service.DefaultPrometheusMetrics;
+import org.jenkinsci.plugins.prometheus.service.ExpositionFormat;
+import org.jenkinsci.plugins.prometheus.service.MetricsSnapshot;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,16 +20,23 @@ import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -95,7 +104,7 @@ public class PrometheusActionTest {
         // given
         DefaultPrometheusMetrics prometheusMetrics = mock(DefaultPrometheusMetrics.class);
         String responseBody = "testMetric";
-        when(prometheusMetrics.getMetrics()).thenReturn(responseBody);
+        when(prometheusMetrics.getSnapshot()).thenReturn(new MetricsSnapshot(responseBody.getBytes(StandardCharsets.UTF_8)));
         try (MockedStatic<DefaultPrometheusMetrics> defaultPrometheusMetricsMockedStatic = mockStatic(DefaultPrometheusMetrics.class)) {
             defaultPrometheusMetricsMockedStatic.when(DefaultPrometheusMetrics::get).thenReturn(prometheusMetrics);
             PrometheusAction action = new PrometheusAction();
@@ -111,24 +120,244 @@ public class PrometheusActionTest {
                 .call()
                 .assertHttpStatus(HTTP_OK)
                 .assertContentType(TextFormat.CONTENT_TYPE_004)
-                .assertHttpHeader("Cache-Control", "must-revalidate,no-cache,no-store")
+                .assertHttpHeader("Cache-Control", "must-revalidate,no-cache")
+                .assertContentLength(responseBody.length())
                 .assertBody(responseBody);
         }
     }
 
+    @Test
+    public void shouldReturnGzipMetricsWhenAccepted() throws IOException, jakarta.servlet.ServletException {
+        // given
+        DefaultPrometheusMetrics prometheusMetrics = mock(DefaultPrometheusMetrics.class);
+        String responseBody = "testMetric";
+        MetricsSnapshot snapshot = MetricsSnapshot.of(responseBody.getBytes(StandardCharsets.UTF_8), true);
+        when(prometheusMetrics.getSnapshot()).thenReturn(snapshot);
+        try (MockedStatic<DefaultPrometheusMetrics> defaultPrometheusMetricsMockedStatic = mockStatic(DefaultPrometheusMetrics.class)) {
+            defaultPrometheusMetricsMockedStatic.when(DefaultPrometheusMetrics::get).thenReturn(prometheusMetrics);
+            PrometheusAction action = new PrometheusAction();
+            StaplerRequest2 request = mock(StaplerRequest2.class);
+            when(request.getRestOfPath()).thenReturn("prometheus");
+            when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+
+            // when
+            HttpResponse actual = action.doDynamic(request);
+
+            // then
+            AssertStaplerResponse.from(actual)
+                .call()
+                .assertHttpStatus(HTTP_OK)
+                .assertHttpHeader("Content-Encoding", "gzip")
+                .assertHttpHeader("Vary", "Accept-Encoding")
+                .assertContentLength(snapshot.getContentLength(ExpositionFormat.TEXT_004, true))
+                .assertGzipBody(responseBody);
+        }
+    }
+
+    @Test
+    public void shouldReturnUncompressedMetricsWhenGzipNotAccepted() throws IOException, jakarta.servlet.ServletException {
+        // given
+        DefaultPrometheusMetrics prometheusMetrics = mock(DefaultPrometheusMetrics.class);
+        String responseBody = "testMetric";
+        when(prometheusMetrics.getSnapshot()).thenReturn(MetricsSnapshot.of(responseBody.getBytes(StandardCharsets.UTF_8), true));
+        try (MockedStatic<DefaultPrometheusMetrics> defaultPrometheusMetricsMockedStatic = mockStatic(DefaultPrometheusMetrics.class)) {
+            defaultPrometheusMetricsMockedStatic.when(DefaultPrometheusMetrics::get).thenReturn(prometheusMetrics);
+            PrometheusAction action = new PrometheusAction();
+            StaplerRequest2 request = mock(StaplerRequest2.class);
+            when(request.getRestOfPath()).thenReturn("prometheus");
+            when(request.getHeader("Accept-Encoding")).thenReturn("identity");
+
+            // when
+            HttpResponse actual = action.doDynamic(request);
+
+            // then
+            AssertStaplerResponse.from(actual)
+                .call()
+                .assertHttpStatus(HTTP_OK)
+                .assertContentLength(responseBody.length())
+                .assertBody(responseBody);
+        }
+    }
+
+    @Test
+    public void shouldReturnETagOfSnapshot() throws IOException, jakarta.servlet.ServletException {
+        // given
+        DefaultPrometheusMetrics prometheusMetrics = mock(DefaultPrometheusMetrics.class);
+        String responseBody = "testMetric";
+        when(prometheusMetrics.getSnapshot()).thenReturn(MetricsSnapshot.of(responseBody.getBytes(StandardCharsets.UTF_8), false, "abc-1"));
+        try (MockedStatic<DefaultPrometheusMetrics> defaultPrometheusMetricsMockedStatic = mockStatic(DefaultPrometheusMetrics.class)) {
+            defaultPrometheusMetricsMockedStatic.when(DefaultPrometheusMetrics::get).thenReturn(prometheusMetrics);
+            PrometheusAction action = new PrometheusAction();
+            StaplerRequest2 request = mock(StaplerRequest2.class);
+            when(request.getRestOfPath()).thenReturn("prometheus");
+            when(request.getHeader("If-None-Match")).thenReturn("\"abc-0\"");
+
+            // when
+            HttpResponse actual = action.doDynamic(request);
+
+            // then
+            AssertStaplerResponse.from(actual)
+                .call()
+                .assertHttpStatus(HTTP_OK)
+                .assertHttpHeader("ETag", "\"abc-1\"")
+                .assertBody(responseBody);
+        }
+    }
+
+    @Test
+    public void shouldReturnNotModifiedWhenSnapshotUnchanged() throws IOException, jakarta.servlet.ServletException {
+        // given
+        DefaultPrometheusMetrics prometheusMetrics = mock(DefaultPrometheusMetrics.class);
+        when(prometheusMetrics.getSnapshot()).thenReturn(MetricsSnapshot.of("testMetric".getBytes(StandardCharsets.UTF_8), true, "abc-1"));
+        try (MockedStatic<DefaultPrometheusMetrics> defaultPrometheusMetricsMockedStatic = mockStatic(DefaultPrometheusMetrics.class)) {
+            defaultPrometheusMetricsMockedStatic.when(DefaultPrometheusMetrics::get).thenReturn(prometheusMetrics);
+            PrometheusAction action = new PrometheusAction();
+            StaplerRequest2 request = mock(StaplerRequest2.class);
+            when(request.getRestOfPath()).thenReturn("prometheus");
+            when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+            when(request.getHeader("If-None-Match")).thenReturn("W/\"abc-1-gzip\"");
+
+            // when
+            HttpResponse actual = action.doDynamic(request);
+
+            // then
+            AssertStaplerResponse.from(actual)
+                .call()
+                .assertHttpStatus(HTTP_NOT_MODIFIED)
+                .assertHttpHeader("ETag", "\"abc-1-gzip\"")
+                .assertNoBody();
+        }
+    }
+
+    @Test
+    public void shouldReturnOpenMetricsWhenAccepted() throws IOException, jakarta.servlet.ServletException {
+        // given
+        DefaultPrometheusMetrics prometheusMetrics = mock(DefaultPrometheusMetrics.class);
+        String openMetricsBody = "testMetric\n# EOF\n";
+        when(prometheusMetrics.getSnapshot()).thenReturn(MetricsSnapshot.of(Map.of(
+                ExpositionFormat.TEXT_004, "testMetric\n".getBytes(StandardCharsets.UTF_8),
+                ExpositionFormat.OPENMETRICS_100, openMetricsBody.getBytes(StandardCharsets.UTF_8)), false, "abc-1"));
+        try (MockedStatic<DefaultPrometheusMetrics> defaultPrometheusMetricsMockedStatic = mockStatic(DefaultPrometheusMetrics.class)) {
+            defaultPrometheusMetricsMockedStatic.when(DefaultPrometheusMetrics::get).thenReturn(prometheusMetrics);
+            PrometheusAction action = new PrometheusAction();
+            StaplerRequest2 request = mock(StaplerRequest2.class);
+            when(request.getRestOfPath()).thenReturn("prometheus");
+            when(request.getHeader("Accept")).thenReturn("application/openmetrics-text; version=1.0.0,text/plain;version=0.0.4;q=0.5");
+
+            // when
+            HttpResponse actual = action.doDynamic(request);
+
+            // then
+            AssertStaplerResponse.from(actual)
+                .call()
+                .assertHttpStatus(HTTP_OK)
+                .assertContentType(TextFormat.CONTENT_TYPE_OPENMETRICS_100)
+                .assertHttpHeader("Vary", "Accept")
+                .assertHttpHeader("ETag", "\"abc-1-om\"")
+                .assertBody(openMetricsBody);
+        }
+    }
+
+    @Test
+    public void shouldReturnTextFormatWhenOpenMetricsNotRendered() throws IOException, jakarta.servlet.ServletException {
+        // given
+        DefaultPrometheusMetrics prometheusMetrics = mock(DefaultPrometheusMetrics.class);
+        when(prometheusMetrics.getSnapshot()).thenReturn(MetricsSnapshot.of("testMetric".getBytes(StandardCharsets.UTF_8), false));
+        try (MockedStatic<DefaultPrometheusMetrics> defaultPrometheusMetricsMockedStatic = mockStatic(DefaultPrometheusMetrics.class)) {
+            defaultPrometheusMetricsMockedStatic.when(DefaultPrometheusMetrics::get).thenReturn(prometheusMetrics);
+            PrometheusAction action = new PrometheusAction();
+            StaplerRequest2 request = mock(StaplerRequest2.class);
+            when(request.getRestOfPath()).thenReturn("prometheus");
+            when(request.getHeader("Accept")).thenReturn("application/openmetrics-text; version=1.0.0");
+
+            // when
+            HttpResponse actual = action.doDynamic(request);
+
+            // then
+            AssertStaplerResponse.from(actual)
+                .call()
+                .assertHttpStatus(HTTP_OK)
+                .assertContentType(TextFormat.CONTENT_TYPE_004)
+                .assertBody("testMetric");
+        }
+    }
+
+    @Test
+    public void shouldMatchETags() {
+        Assertions.assertTrue(PrometheusAction.matchesETag("\"a-1\"", "\"a-1\""));
+        Assertions.assertTrue(PrometheusAction.matchesETag("\"a-0\", W/\"a-1\"", "\"a-1\""));
+        Assertions.assertTrue(PrometheusAction.matchesETag("*", "\"a-1\""));
+        Assertions.assertFalse(PrometheusAction.matchesETag("\"a-1\"", "\"a-1-gzip\""));
+        Assertions.assertFalse(PrometheusAction.matchesETag(null, "\"a-1\""));
+        Assertions.assertFalse(PrometheusAction.matchesETag("*", null));
+    }
+
+    @Test
+    public void shouldParseAcceptEncoding() {
+        Assertions.assertTrue(PrometheusAction.acceptsGzip("gzip"));
+        Assertions.assertTrue(PrometheusAction.acceptsGzip("deflate, GZIP;q=0.5"));
+        Assertions.assertTrue(PrometheusAction.acceptsGzip("*"));
+        Assertions.assertTrue(PrometheusAction.acceptsGzip("*;q=0, gzip"));
+        Assertions.assertFalse(PrometheusAction.acceptsGzip(null));
+        Assertions.assertFalse(PrometheusAction.acceptsGzip("identity"));
+        Assertions.assertFalse(PrometheusAction.acceptsGzip("gzip;q=0"));
+        Assertions.assertFalse(PrometheusAction.acceptsGzip("gzip;q=0.0, *"));
+    }
+
+    @Test
+    public void shouldReturnMetricsOfShard() throws IOException, jakarta.servlet.ServletException {
+        // given
+        DefaultPrometheusMetrics prometheusMetrics = mock(DefaultPrometheusMetrics.class);
+        String responseBody = "shardMetric";
+        when(prometheusMetrics.getShardSnapshot(1, 4)).thenReturn(new MetricsSnapshot(responseBody.getBytes(StandardCharsets.UTF_8)));
+        when(configuration.getJobShards()).thenReturn(4);
+        try (MockedStatic<DefaultPrometheusMetrics> defaultPrometheusMetricsMockedStatic = mockStatic(DefaultPrometheusMetrics.class)) {
+            defaultPrometheusMetricsMockedStatic.when(DefaultPrometheusMetrics::get).thenReturn(prometheusMetrics);
+            PrometheusAction action = new PrometheusAction();
+            StaplerRequest2 request = mock(StaplerRequest2.class);
+            when(request.getRestOfPath()).thenReturn("prometheus/shard/1/4");
+
+            // when
+            HttpResponse actual = action.doDynamic(request);
+
+            // then
+            AssertStaplerResponse.from(actual)
+                .call()
+                .assertHttpStatus(HTTP_OK)
+                .assertBody(responseBody);
+            verify(prometheusMetrics, never()).getSnapshot();
+        }
+    }
+
+    @Test
+    public void shouldReturnNotFoundWhenNumberOfShardsDiffers() throws IOException, jakarta.servlet.ServletException {
+        // given
+        when(configuration.getJobShards()).thenReturn(4);
+        PrometheusAction action = new PrometheusAction();
+        StaplerRequest2 request = mock(StaplerRequest2.class);
+        when(request.getRestOfPath()).thenReturn("prometheus/shard/1/2");
+
+        // when
+        HttpResponse actual = action.doDynamic(request);
+
+        // then
+        AssertStaplerResponse.from(actual)
+            .call()
+            .assertHttpStatus(HTTP_NOT_FOUND);
+    }
+
     private static class AssertStaplerResponse {
         private final StaplerResponse2 response;
         private final HttpResponse httpResponse;
-        private final StringWriter stringWriter;
+        private final ByteArrayOutputStream body;
 
 
         private AssertStaplerResponse(HttpResponse httpResponse) throws IOException {
             this.httpResponse = httpResponse;
             this.response = mock(StaplerResponse2.class);
-            stringWriter = new StringWriter();
-            PrintWriter writer = new PrintWriter(stringWriter);
+            body = new ByteArrayOutputStream();
 
-            lenient().when(response.getWriter()).thenReturn(writer);
+            lenient().when(response.getOutputStream()).thenReturn(new CapturingServletOutputStream(body));
         }
 
         static AssertStaplerResponse from(HttpResponse actual) throws IOException {
@@ -150,8 +379,25 @@ public class PrometheusActionTest {
             return this;
         }
 
+        private AssertStaplerResponse assertContentLength(int contentLength) {
+            verify(response).setContentLength(contentLength);
+            return this;
+        }
+
         private AssertStaplerResponse assertBody(String payload) {
-            Assertions.assertEquals(stringWriter.toString(), payload);
+            Assertions.assertEquals(body.toString(StandardCharsets.UTF_8), payload);
+            return this;
+        }
+
+        private AssertStaplerResponse assertNoBody() throws IOException {
+            verify(response, never()).getOutputStream();
+            return this;
+        }
+
+        private AssertStaplerResponse assertGzipBody(String payload) throws IOException {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+                Assertions.assertEquals(payload, new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+            }
             return this;
         }
 
@@ -161,4 +407,32 @@ public class PrometheusActionTest {
         }
     }
 
+    private static class CapturingServletOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream target;
+
+        private CapturingServletOutputStream(ByteArrayOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            // not needed for blocking writes
+        }
+
+        @Override
+        public void write(int b) {
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            target.write(b, off, len);
+        }
+    }
+
 }
@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Collector;
+import org.jenkinsci.plugins.prometheus.config.PrometheusConfiguration;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+public class CollectionStatisticsTest {
+
+    @Test
+    public void shouldExposeStatisticsWithNamespace() throws IOException {
+        CollectionStatistics statistics = CollectionStatistics.get();
+        Collector.MetricFamilySamples family = new Collector.MetricFamilySamples("some_metric", Collector.Type.GAUGE, "help",
+                List.of(new Collector.MetricFamilySamples.Sample("some_metric", List.of(), List.of(), 1),
+                        new Collector.MetricFamilySamples.Sample("some_metric", List.of(), List.of(), 2)));
+        statistics.recordCollectorRun("StatisticsTestCollector", TimeUnit.MILLISECONDS.toNanos(20), List.of(family));
+        statistics.recordCollectorStale("StatisticsTestCollector", true);
+        statistics.recordSnapshot(MetricsSnapshot.of("some_metric 1.0\n".getBytes(StandardCharsets.UTF_8), true));
+
+        try (MockedStatic<PrometheusConfiguration> configStatic = mockStatic(PrometheusConfiguration.class)) {
+            PrometheusConfiguration config = mock(PrometheusConfiguration.class);
+            when(config.getDefaultNamespace()).thenReturn("ns");
+            configStatic.when(PrometheusConfiguration::get).thenReturn(config);
+
+            List<Collector.MetricFamilySamples> familySamples = statistics.collect();
+
+            assertTrue(familySamples.stream().allMatch(f -> f.name.startsWith("ns_jenkins_")));
+            assertEquals(1.0, value(familySamples, "ns_jenkins_collector_families", "StatisticsTestCollector"));
+            assertEquals(2.0, value(familySamples, "ns_jenkins_collector_series", "StatisticsTestCollector"));
+            assertEquals(1.0, value(familySamples, "ns_jenkins_collector_stale", "StatisticsTestCollector"));
+            assertEquals(1.0, value(familySamples, "ns_jenkins_collector_duration_seconds_count", "StatisticsTestCollector"));
+            assertEquals(16.0, value(familySamples, "ns_jenkins_snapshot_size_bytes", "TEXT_004", "identity"));
+            assertEquals(0.0, value(familySamples, "ns_jenkins_snapshot_restored"));
+        }
+    }
+
+    private static double value(List<Collector.MetricFamilySamples> familySamples, String sampleName, String... labelValues) {
+        return familySamples.stream()
+                .flatMap(f -> f.samples.stream())
+                .filter(s -> s.name.equals(sampleName) && s.labelValues.equals(List.of(labelValues)))
+                .findFirst()
+                .orElseThrow()
+                .value;
+    }
+}
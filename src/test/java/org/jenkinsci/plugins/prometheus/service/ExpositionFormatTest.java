@@ -0,0 +1,57 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.exporter.common.TextFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ExpositionFormatTest {
+
+    private static final List<Collector.MetricFamilySamples> FAMILIES = List.of(
+            family("first_metric", 1.0),
+            family("second_metric", 2.0));
+
+    @Test
+    public void shouldRenderSameOutputAsTextFormatFamilyByFamily() throws IOException {
+        StringWriter expected = new StringWriter();
+        TextFormat.writeOpenMetrics100(expected, Collections.enumeration(FAMILIES));
+
+        assertEquals(expected.toString(), render(ExpositionFormat.OPENMETRICS_100));
+    }
+
+    @Test
+    public void shouldRenderTextFormatFamilyByFamily() throws IOException {
+        StringWriter expected = new StringWriter();
+        TextFormat.write004(expected, Collections.enumeration(FAMILIES));
+
+        assertEquals(expected.toString(), render(ExpositionFormat.TEXT_004));
+    }
+
+    @Test
+    public void shouldNegotiateFormat() {
+        assertEquals(ExpositionFormat.TEXT_004, ExpositionFormat.fromAcceptHeader(null));
+        assertEquals(ExpositionFormat.TEXT_004, ExpositionFormat.fromAcceptHeader("text/plain"));
+        assertEquals(ExpositionFormat.OPENMETRICS_100, ExpositionFormat.fromAcceptHeader("application/openmetrics-text; version=1.0.0"));
+    }
+
+    private static String render(ExpositionFormat format) throws IOException {
+        StringWriter writer = new StringWriter();
+        StringWriter scratch = new StringWriter();
+        for (Collector.MetricFamilySamples family : FAMILIES) {
+            format.writeFamily(writer, family, scratch);
+        }
+        format.finish(writer);
+        return writer.toString();
+    }
+
+    private static Collector.MetricFamilySamples family(String name, double value) {
+        return new Collector.MetricFamilySamples(name, Collector.Type.GAUGE, "help",
+                List.of(new Collector.MetricFamilySamples.Sample(name, List.of("label"), List.of("value"), value)));
+    }
+}
@@ -0,0 +1,130 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Gauge;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsSnapshotTest {
+
+    private static final String METRICS = "# HELP some_metric help\n# TYPE some_metric gauge\nsome_metric{label=\"ä\"} 1.0\n";
+
+    @Test
+    public void shouldServeEncodedBody() throws IOException {
+        byte[] body = METRICS.getBytes(StandardCharsets.UTF_8);
+        MetricsSnapshot snapshot = MetricsSnapshot.of(body, false);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(out, ExpositionFormat.TEXT_004, false);
+
+        assertEquals(body.length, snapshot.getContentLength(ExpositionFormat.TEXT_004, false));
+        assertArrayEquals(body, out.toByteArray());
+        assertEquals(METRICS, snapshot.asText());
+        assertFalse(snapshot.hasGzipBody());
+        assertThrows(IllegalStateException.class, () -> snapshot.writeTo(new ByteArrayOutputStream(), ExpositionFormat.TEXT_004, true));
+    }
+
+    @Test
+    public void shouldServeCompressedBody() throws IOException {
+        byte[] body = METRICS.getBytes(StandardCharsets.UTF_8);
+        MetricsSnapshot snapshot = MetricsSnapshot.of(body, true);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(out, ExpositionFormat.TEXT_004, true);
+
+        assertTrue(snapshot.hasGzipBody());
+        assertEquals(out.size(), snapshot.getContentLength(ExpositionFormat.TEXT_004, true));
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertArrayEquals(body, gzip.readAllBytes());
+        }
+    }
+
+    @Test
+    public void shouldKeepBodiesAndVersionWhenRefreshed() throws IOException {
+        MetricsSnapshot snapshot = MetricsSnapshot.fromChunks(
+                Map.of(ExpositionFormat.TEXT_004, RenderedChunk.unindexed(METRICS.getBytes(StandardCharsets.UTF_8))),
+                true, "abc-42", 1000L);
+
+        MetricsSnapshot refreshed = snapshot.refreshed();
+
+        assertEquals(METRICS, refreshed.asText());
+        assertEquals(snapshot.getETag(ExpositionFormat.TEXT_004, true), refreshed.getETag(ExpositionFormat.TEXT_004, true));
+        assertTrue(refreshed.getCreatedMillis() > snapshot.getCreatedMillis());
+    }
+
+    @Test
+    public void shouldProvideETagPerRepresentation() throws IOException {
+        MetricsSnapshot snapshot = MetricsSnapshot.of(METRICS.getBytes(StandardCharsets.UTF_8), true, "abc-42");
+
+        assertEquals("\"abc-42\"", snapshot.getETag(ExpositionFormat.TEXT_004, false));
+        assertEquals("\"abc-42-gzip\"", snapshot.getETag(ExpositionFormat.TEXT_004, true));
+    }
+
+    @Test
+    public void shouldServeEveryRenderedFormat() throws IOException {
+        byte[] text = METRICS.getBytes(StandardCharsets.UTF_8);
+        byte[] openMetrics = (METRICS + "# EOF\n").getBytes(StandardCharsets.UTF_8);
+        MetricsSnapshot snapshot = MetricsSnapshot.of(
+                Map.of(ExpositionFormat.TEXT_004, text, ExpositionFormat.OPENMETRICS_100, openMetrics), true, "abc-42");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(out, ExpositionFormat.OPENMETRICS_100, false);
+
+        assertArrayEquals(openMetrics, out.toByteArray());
+        assertEquals(ExpositionFormat.OPENMETRICS_100, snapshot.select(ExpositionFormat.OPENMETRICS_100));
+        assertEquals("\"abc-42-om-gzip\"", snapshot.getETag(ExpositionFormat.OPENMETRICS_100, true));
+        assertEquals(METRICS, snapshot.asText());
+    }
+
+    @Test
+    public void shouldFallBackToTextFormat() throws IOException {
+        MetricsSnapshot snapshot = MetricsSnapshot.of(METRICS.getBytes(StandardCharsets.UTF_8), false);
+
+        assertFalse(snapshot.supports(ExpositionFormat.OPENMETRICS_100));
+        assertEquals(ExpositionFormat.TEXT_004, snapshot.select(ExpositionFormat.OPENMETRICS_100));
+        assertThrows(IllegalArgumentException.class, () -> MetricsSnapshot.of(Map.of(), false, null));
+    }
+
+    @Test
+    public void shouldServeSelectedFamilies() throws IOException {
+        Gauge first = Gauge.build().name("first_metric").help("first").create();
+        first.set(1);
+        Gauge second = Gauge.build().name("second_metric").help("second").create();
+        second.set(2);
+        Set<ExpositionFormat> formats = EnumSet.allOf(ExpositionFormat.class);
+        List<Map<ExpositionFormat, RenderedChunk>> chunks = List.of(
+                ExpositionRenderer.render(formats, Collections.enumeration(first.collect())),
+                ExpositionRenderer.render(formats, Collections.enumeration(second.collect())));
+        MetricsSnapshot snapshot = MetricsSnapshot.fromChunks(ExpositionRenderer.join(formats, chunks), true, "abc-1");
+
+        assertEquals("# HELP second_metric second\n# TYPE second_metric gauge\nsecond_metric 2.0\n",
+                new String(snapshot.selectFamilies(ExpositionFormat.TEXT_004, "second_metric"::equals), StandardCharsets.UTF_8));
+        assertEquals("# TYPE first_metric gauge\n# HELP first_metric first\nfirst_metric 1.0\n# EOF\n",
+                new String(snapshot.selectFamilies(ExpositionFormat.OPENMETRICS_100, "first_metric"::equals), StandardCharsets.UTF_8));
+        assertEquals("# EOF\n",
+                new String(snapshot.selectFamilies(ExpositionFormat.OPENMETRICS_100, name -> false), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void emptySnapshotHasNoContent() {
+        assertEquals(0, MetricsSnapshot.EMPTY.getContentLength(ExpositionFormat.TEXT_004, false));
+        assertEquals("", MetricsSnapshot.EMPTY.asText());
+        assertNull(MetricsSnapshot.EMPTY.getETag(ExpositionFormat.TEXT_004, false));
+    }
+}
@@ -0,0 +1,154 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScheduledCollectorTest {
+
+    private static final Set<ExpositionFormat> FORMATS = EnumSet.of(ExpositionFormat.TEXT_004);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldReturnFreshResults() throws InterruptedException {
+        ScheduledCollector collector = new ScheduledCollector("test", new TestCollector(null, false));
+
+        collector.submit(executor, FORMATS, 0, TimeUnit.SECONDS);
+        Map<ExpositionFormat, RenderedChunk> chunks = collector.await(5, TimeUnit.SECONDS);
+
+        assertFalse(collector.isStale());
+        assertSame(chunks, collector.getLastChunks());
+        assertEquals(0, chunks.get(ExpositionFormat.TEXT_004).getBytes().length);
+    }
+
+    @Test
+    public void shouldReturnPreviousResultsOnTimeout() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        TestCollector testCollector = new TestCollector(release, false);
+        ScheduledCollector collector = new ScheduledCollector("test", testCollector);
+        release.countDown();
+        collector.submit(executor, FORMATS, 0, TimeUnit.SECONDS);
+        Map<ExpositionFormat, RenderedChunk> previous = collector.await(5, TimeUnit.SECONDS);
+
+        CountDownLatch block = new CountDownLatch(1);
+        testCollector.release = block;
+        collector.submit(executor, FORMATS, 0, TimeUnit.SECONDS);
+        Map<ExpositionFormat, RenderedChunk> chunks = collector.await(50, TimeUnit.MILLISECONDS);
+
+        assertTrue(collector.isStale());
+        assertSame(previous, chunks);
+
+        // the still running collector is not started a second time, its late result is picked up
+        collector.submit(executor, FORMATS, 0, TimeUnit.SECONDS);
+        block.countDown();
+        Map<ExpositionFormat, RenderedChunk> late = collector.await(5, TimeUnit.SECONDS);
+
+        assertFalse(collector.isStale());
+        assertNotSame(previous, late);
+        assertEquals(2, testCollector.runs.get());
+    }
+
+    @Test
+    public void shouldMeasureTimeoutFromSubmission() throws InterruptedException {
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        CountDownLatch block = new CountDownLatch(1);
+        try {
+            ScheduledCollector busy = new ScheduledCollector("busy", new TestCollector(block, false));
+            ScheduledCollector queued = new ScheduledCollector("queued", new TestCollector(null, false));
+            busy.submit(singleThread, FORMATS, 0, TimeUnit.SECONDS);
+            queued.submit(singleThread, FORMATS, 0, TimeUnit.SECONDS);
+            Thread.sleep(1000);
+
+            // the queued run has used up its timeout waiting for the busy worker
+            long started = System.nanoTime();
+            queued.await(1, TimeUnit.SECONDS);
+
+            assertTrue(queued.isStale());
+            assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(500));
+        } finally {
+            block.countDown();
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldReturnPreviousResultsOnFailure() throws InterruptedException {
+        TestCollector testCollector = new TestCollector(null, false);
+        ScheduledCollector collector = new ScheduledCollector("test", testCollector);
+        collector.submit(executor, FORMATS, 0, TimeUnit.SECONDS);
+        Map<ExpositionFormat, RenderedChunk> previous = collector.await(5, TimeUnit.SECONDS);
+
+        testCollector.fail = true;
+        collector.submit(executor, FORMATS, 0, TimeUnit.SECONDS);
+
+        assertSame(previous, collector.await(5, TimeUnit.SECONDS));
+        assertTrue(collector.isStale());
+    }
+
+    @Test
+    public void shouldOnlyRunWhenDue() throws InterruptedException {
+        TestCollector testCollector = new TestCollector(null, false);
+        ScheduledCollector collector = new ScheduledCollector("test", testCollector);
+        assertTrue(collector.submit(executor, FORMATS, 1, TimeUnit.HOURS));
+        Map<ExpositionFormat, RenderedChunk> previous = collector.await(5, TimeUnit.SECONDS);
+
+        assertFalse(collector.submit(executor, FORMATS, 1, TimeUnit.HOURS));
+        assertSame(previous, collector.await(5, TimeUnit.SECONDS));
+        assertFalse(collector.isStale());
+
+        // a format which has not been rendered yet is due immediately
+        assertTrue(collector.submit(executor, EnumSet.allOf(ExpositionFormat.class), 1, TimeUnit.HOURS));
+        assertEquals(2, collector.await(5, TimeUnit.SECONDS).size());
+        assertEquals(2, testCollector.runs.get());
+    }
+
+    private static class TestCollector extends Collector {
+
+        private final AtomicInteger runs = new AtomicInteger();
+        private volatile CountDownLatch release;
+        private volatile boolean fail;
+
+        private TestCollector(CountDownLatch release, boolean fail) {
+            this.release = release;
+            this.fail = fail;
+        }
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            runs.incrementAndGet();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (fail) {
+                throw new IllegalStateException("collector failed");
+            }
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins.prometheus.service;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnapshotStoreTest {
+
+    private static final Set<ExpositionFormat> FORMATS = EnumSet.allOf(ExpositionFormat.class);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldRestoreSavedSnapshot() throws IOException {
+        MetricsSnapshot snapshot = snapshot(
+                new GaugeMetricFamily("first_metric", "help", 1),
+                new GaugeMetricFamily("restored_marker", "help", 0),
+                new GaugeMetricFamily("second_metric", "help", 2));
+        SnapshotStore store = new SnapshotStore(directory.resolve("snapshot.gz"));
+
+        store.save(snapshot, family -> !family.equals("restored_marker"));
+        MetricsSnapshot restored = store.load(List.of(new GaugeMetricFamily("restored_marker", "help", 1)), true);
+
+        assertNotNull(restored);
+        assertEquals(snapshot.getCreatedMillis(), restored.getCreatedMillis());
+        // the restored snapshot contains the marker, so a conditional request for the saved one must not match it
+        assertEquals(snapshot.getVersion() + SnapshotStore.RESTORED_VERSION_SUFFIX, restored.getVersion());
+        assertNotEquals(snapshot.getETag(ExpositionFormat.TEXT_004, false), restored.getETag(ExpositionFormat.TEXT_004, false));
+        assertTrue(restored.hasGzipBody());
+        assertEquals("# HELP first_metric help\n# TYPE first_metric gauge\nfirst_metric 1.0\n"
+                + "# HELP second_metric help\n# TYPE second_metric gauge\nsecond_metric 2.0\n"
+                + "# HELP restored_marker help\n# TYPE restored_marker gauge\nrestored_marker 1.0\n", restored.asText());
+        String openMetrics = new String(restored.selectFamilies(ExpositionFormat.OPENMETRICS_100, "second_metric"::equals), StandardCharsets.UTF_8);
+        assertEquals("# TYPE second_metric gauge\n# HELP second_metric help\nsecond_metric 2.0\n# EOF\n", openMetrics);
+    }
+
+    @Test
+    public void shouldReplacePreviousSnapshot() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory.resolve("snapshot.gz"));
+
+        store.save(snapshot(new GaugeMetricFamily("first_metric", "help", 1)), family -> true);
+        store.save(snapshot(new GaugeMetricFamily("first_metric", "help", 2)), family -> true);
+
+        MetricsSnapshot restored = store.load(List.of(), false);
+        assertNotNull(restored);
+        assertEquals("# HELP first_metric help\n# TYPE first_metric gauge\nfirst_metric 2.0\n", restored.asText());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count(), "No temporary files should be left behind");
+        }
+    }
+
+    @Test
+    public void shouldIgnoreMissingOrCorruptSnapshot() throws IOException {
+        Path file = directory.resolve("snapshot.gz");
+        SnapshotStore store = new SnapshotStore(file);
+
+        assertNull(store.load(List.of(), false));
+
+        Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        assertNull(store.load(List.of(), false));
+    }
+
+    private static MetricsSnapshot snapshot(Collector.MetricFamilySamples... families) throws IOException {
+        Map<ExpositionFormat, RenderedChunk> chunk = ExpositionRenderer.render(FORMATS, Collections.enumeration(List.of(families)));
+        return MetricsSnapshot.fromChunks(ExpositionRenderer.join(FORMATS, List.of(chunk)), false, "abc-1");
+    }
+}
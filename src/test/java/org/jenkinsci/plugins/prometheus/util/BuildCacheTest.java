@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.prometheus.util;
+
+import hudson.model.Run;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BuildCacheTest {
+
+    @Test
+    void shouldEvictTheLeastRecentlyUsedBuild() {
+        BuildCache<String> cache = new BuildCache<>(2);
+        Run<?, ?> first = mockRun("job#1");
+        Run<?, ?> second = mockRun("job#2");
+        Run<?, ?> third = mockRun("job#3");
+
+        cache.put(first, "first");
+        cache.put(second, "second");
+        assertEquals("first", cache.get(first));
+        cache.put(third, "third");
+
+        assertEquals("first", cache.get(first));
+        assertNull(cache.get(second));
+        assertEquals("third", cache.get(third));
+    }
+
+    @Test
+    void shouldFindTheValueOfABuildLoadedAgain() {
+        BuildCache<String> cache = new BuildCache<>(2);
+        cache.put(mockRun("job#1"), "first");
+
+        assertEquals("first", cache.get(mockRun("job#1")));
+    }
+
+    @Test
+    void shouldNotCacheBuildsWithoutJob() {
+        BuildCache<String> cache = new BuildCache<>(2);
+        Run<?, ?> run = mock(Run.class);
+        cache.put(run, "value");
+
+        assertNull(cache.get(run));
+    }
+
+    private static Run<?, ?> mockRun(String externalizableId) {
+        Run<?, ?> run = mock(Run.class);
+        when(run.getExternalizableId()).thenReturn(externalizableId);
+        when(run.getTimeInMillis()).thenReturn(1000L);
+        return run;
+    }
+}
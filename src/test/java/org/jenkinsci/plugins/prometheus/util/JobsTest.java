@@ -11,6 +11,8 @@ import java.util.List;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SuppressWarnings("rawtypes")
@@ -34,10 +36,66 @@ public class JobsTest {
         }
     }
 
+    @Test
+    void testEachJobOfShard() {
+        try (MockedStatic<Jenkins> jenkinsStatic = mockStatic(Jenkins.class)) {
+            Jenkins jenkins = mock(Jenkins.class);
+            List<Job> jobs = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                jobs.add(mockJob("folder/name" + i));
+            }
+            when(jenkins.getAllItems(Job.class)).thenReturn(jobs);
+            jenkinsStatic.when(Jenkins::get).thenReturn(jenkins);
+
+            List<String> names = new ArrayList<>();
+            for (int shard = 0; shard < 3; shard++) {
+                int currentShard = shard;
+                Jobs.forEachJob(shard, 3, job -> {
+                    Assertions.assertTrue(Jobs.isInShard(job.getFullName(), currentShard, 3));
+                    names.add(job.getName());
+                });
+            }
+
+            // every job is visited by exactly one shard
+            Assertions.assertEquals(20, names.size());
+            Assertions.assertEquals(20, names.stream().distinct().count());
+        }
+    }
+
+    @Test
+    void testPartitionTraversesJobsOncePerCollection() {
+        try (MockedStatic<Jenkins> jenkinsStatic = mockStatic(Jenkins.class)) {
+            Jenkins jenkins = mock(Jenkins.class);
+            List<Job> jobs = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                jobs.add(mockJob("folder/name" + i));
+            }
+            when(jenkins.getAllItems(Job.class)).thenReturn(jobs);
+            jenkinsStatic.when(Jenkins::get).thenReturn(jenkins);
+
+            Jobs.Partition partition = new Jobs.Partition(3);
+            List<String> names = new ArrayList<>();
+            for (int shard = 0; shard < 3; shard++) {
+                Assertions.assertEquals(Jobs.getJobs(shard, 3), partition.getJobs(shard));
+                for (Job job : partition.getJobs(shard)) {
+                    names.add(job.getName());
+                }
+            }
+            Assertions.assertEquals(20, names.stream().distinct().count());
+            // once for the partition, three times for the shards computed one by one
+            verify(jenkins, times(4)).getAllItems(Job.class);
+
+            partition.invalidate();
+            partition.getJobs(0);
+            partition.getJobs(1);
+            verify(jenkins, times(5)).getAllItems(Job.class);
+        }
+    }
 
     private static Job mockJob(String name) {
         Job mock = mock(Job.class);
         when(mock.getName()).thenReturn(name);
+        when(mock.getFullName()).thenReturn(name);
         return mock;
     }
 }
\ No newline at end of file